@@ -0,0 +1,55 @@
+package com.secure_gateway.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secure_gateway.dto.ApiResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the gateway's {@link ApiResponse} envelopes with the gateway object mapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiResponseBenchmark {
+
+    private final ObjectMapper objectMapper = BenchmarkFixtures.OBJECT_MAPPER;
+    private ApiResponse<List<Map<String, Object>>> listResponse;
+
+    @Setup
+    public void setUp() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            rows.add(Map.of("id", i, "name", "account-" + i, "balance", 1000.25 * i));
+        }
+        listResponse = ApiResponse.success(rows);
+    }
+
+    @Benchmark
+    public byte[] serializeFailure() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(ApiResponse.failure(UUID.randomUUID().toString(), "EXTGW02", "Error"));
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(listResponse);
+    }
+}
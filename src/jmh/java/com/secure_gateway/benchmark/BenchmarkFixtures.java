@@ -0,0 +1,134 @@
+package com.secure_gateway.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iwebpp.crypto.TweetNaclFast;
+import com.m2e.model.sso.base.SecretkeyGenerator;
+import com.secure_gateway.audit.AuditLogger;
+import com.secure_gateway.audit.AuditProperties;
+import com.secure_gateway.config.CryptographyConfig;
+import com.secure_gateway.config.RoutePolicyLoader;
+import com.secure_gateway.config.RouterValidator;
+import com.secure_gateway.helper.BlockingRepositoryExecutor;
+import com.secure_gateway.helper.CryptoExecutionStage;
+import com.secure_gateway.helper.DeflatePayloadCodec;
+import com.secure_gateway.helper.GatewayMetrics;
+import com.secure_gateway.helper.GzipPayloadCodec;
+import com.secure_gateway.helper.KeyRing;
+import com.secure_gateway.helper.NonceReplayDetector;
+import com.secure_gateway.helper.PayloadCompression;
+import com.secure_gateway.helper.RequestDecryptor;
+import com.secure_gateway.helper.ResponseEncryptor;
+import com.secure_gateway.helper.SealedKeyFile;
+import com.secure_gateway.helper.SharedKeyCache;
+import com.secure_gateway.repository.GatewayKeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds the gateway's crypto and routing components without a Spring context, backed by an in-memory key table.
+ */
+final class BenchmarkFixtures {
+    static final ObjectMapper OBJECT_MAPPER = new CryptographyConfig().objectMapper();
+
+    private BenchmarkFixtures() {
+    }
+
+    static SharedKeyCache sharedKeyCache() {
+        return new SharedKeyCache(new SimpleMeterRegistry(), 10_000, Duration.ofMinutes(30));
+    }
+
+    /**
+     * Crypto stage that always runs inline, so benchmarks measure the crypto work rather than thread hand-off.
+     */
+    static CryptoExecutionStage inlineCryptoStage() {
+        return new CryptoExecutionStage(new SimpleMeterRegistry(), DataSize.ofGigabytes(1), 1, 1);
+    }
+
+    static KeyRing keyRing(SharedKeyCache sharedKeyCache) {
+        TweetNaclFast.Box.KeyPair keyPair = TweetNaclFast.Box.keyPair();
+        SecretkeyGenerator secretkeyGenerator = new SecretkeyGenerator();
+        secretkeyGenerator.setId("benchmark-key");
+        secretkeyGenerator.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublicKey()));
+        secretkeyGenerator.setSecretKey(Base64.getEncoder().encodeToString(keyPair.getSecretKey()));
+        secretkeyGenerator.setCreatedDate(OffsetDateTime.now());
+
+        GatewayKeyRepository gatewayKeyRepository = mock(GatewayKeyRepository.class);
+        when(gatewayKeyRepository.findByCreatedDateAfterOrderByCreatedDateDesc(any()))
+                .thenAnswer(invocation -> new ArrayList<>(List.of(secretkeyGenerator)));
+
+        KeyRing keyRing = new KeyRing(gatewayKeyRepository, sharedKeyCache,
+                new BlockingRepositoryExecutor(new SimpleMeterRegistry(), false, 1), new SealedKeyFile("", ""),
+                Duration.ofDays(1), Duration.ofHours(6));
+        keyRing.refresh();
+        return keyRing;
+    }
+
+    static RequestDecryptor requestDecryptor(SharedKeyCache sharedKeyCache, KeyRing keyRing) {
+        RequestDecryptor requestDecryptor = new RequestDecryptor();
+        ReflectionTestUtils.setField(requestDecryptor, "objectMapper", OBJECT_MAPPER);
+        ReflectionTestUtils.setField(requestDecryptor, "sharedKeyCache", sharedKeyCache);
+        ReflectionTestUtils.setField(requestDecryptor, "keyRing", keyRing);
+        ReflectionTestUtils.setField(requestDecryptor, "auditLogger", auditLogger());
+        ReflectionTestUtils.setField(requestDecryptor, "payloadCompression", payloadCompression());
+        // The benchmark opens the same envelope repeatedly
+        ReflectionTestUtils.setField(requestDecryptor, "nonceReplayDetector",
+                new NonceReplayDetector(new SimpleMeterRegistry(), false, Duration.ofMinutes(1), 3, 50_000, 1e-6, false,
+                        Duration.ofSeconds(30)));
+        return requestDecryptor;
+    }
+
+    static ResponseEncryptor responseEncryptor(SharedKeyCache sharedKeyCache) {
+        return new ResponseEncryptor(sharedKeyCache, inlineCryptoStage(), new GatewayMetrics(new SimpleMeterRegistry()),
+                auditLogger(), payloadCompression(), DataSize.ofMegabytes(10));
+    }
+
+    /**
+     * Audit logger with every category sampled out, as in the default configuration.
+     */
+    static AuditLogger auditLogger() {
+        return new AuditLogger(new AuditProperties(), new SimpleMeterRegistry());
+    }
+
+    static PayloadCompression payloadCompression() {
+        return new PayloadCompression(List.of(new DeflatePayloadCodec(6), new GzipPayloadCodec(6)), true,
+                DataSize.ofKilobytes(1), DataSize.ofMegabytes(10));
+    }
+
+    static RouterValidator routerValidator() {
+        try {
+            String policy = new ClassPathResource("application.yml").getFile().getPath();
+            return new RouterValidator(new RoutePolicyLoader(new StandardEnvironment(), policy), 10_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Printable ASCII JSON-ish payload of exactly {@code size} bytes.
+     */
+    static String payload(int size) {
+        Random random = new Random(size);
+        StringBuilder builder = new StringBuilder(size);
+        builder.append("{\"data\":\"");
+        while (builder.length() < size - 2) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.append("\"}").substring(0, size);
+    }
+}
@@ -0,0 +1,80 @@
+package com.secure_gateway.benchmark;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import com.secure_gateway.dto.EncryptedPayloadDTO;
+import com.secure_gateway.util.CrytoUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CrytoUtil} box/open across payload sizes, with a precomputed shared key and with a fresh key agreement per
+ * call as the gateway did before the shared-key cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoBenchmark {
+
+    @Param({"1024", "16384", "262144", "1048576", "10485760"})
+    private int payloadSize;
+
+    private String plainText;
+    private byte[] gatewayPublicKey;
+    private byte[] gatewaySecretKey;
+    private byte[] clientPublicKey;
+    private TweetNaclFast.Box precomputedBox;
+    private byte[] cipherText;
+    private byte[] nonce;
+
+    @Setup
+    public void setUp() {
+        TweetNaclFast.Box.KeyPair gateway = TweetNaclFast.Box.keyPair();
+        TweetNaclFast.Box.KeyPair client = TweetNaclFast.Box.keyPair();
+        gatewayPublicKey = gateway.getPublicKey();
+        gatewaySecretKey = gateway.getSecretKey();
+        clientPublicKey = client.getPublicKey();
+
+        precomputedBox = new TweetNaclFast.Box(clientPublicKey, gatewaySecretKey);
+        precomputedBox.before();
+
+        plainText = BenchmarkFixtures.payload(payloadSize);
+        EncryptedPayloadDTO encrypted = CrytoUtil.encrypt(plainText, precomputedBox, gatewayPublicKey);
+        cipherText = Base64.getDecoder().decode(encrypted.getCipherText());
+        nonce = Base64.getDecoder().decode(encrypted.getNonce());
+    }
+
+    @Benchmark
+    public EncryptedPayloadDTO encryptPrecomputed() {
+        return CrytoUtil.encrypt(plainText, precomputedBox, gatewayPublicKey);
+    }
+
+    @Benchmark
+    public EncryptedPayloadDTO encryptWithKeyAgreement() {
+        return CrytoUtil.encrypt(plainText, clientPublicKey, gatewaySecretKey, gatewayPublicKey);
+    }
+
+    @Benchmark
+    public String decryptPrecomputed() {
+        return CrytoUtil.decrypt(cipherText, nonce, precomputedBox);
+    }
+
+    @Benchmark
+    public String decryptWithKeyAgreement() {
+        return CrytoUtil.decrypt(cipherText, nonce, clientPublicKey, gatewaySecretKey);
+    }
+}
@@ -0,0 +1,98 @@
+package com.secure_gateway.benchmark;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import com.secure_gateway.dto.EncryptedPayloadDTO;
+import com.secure_gateway.helper.GatewayKey;
+import com.secure_gateway.helper.KeyRing;
+import com.secure_gateway.helper.RequestDecryptor;
+import com.secure_gateway.helper.ResponseEncryptor;
+import com.secure_gateway.helper.SharedKeyCache;
+import com.secure_gateway.util.CrytoUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static com.m2e.gateway.constant.CryptographyConstant.USER_PUBLIC_KEY_BASE64;
+
+/**
+ * Request envelope decryption and response envelope encryption through the gateway helpers, using synthetic
+ * exchanges and a warm shared-key cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnvelopeBenchmark {
+
+    @Param({"1024", "16384", "262144", "1048576"})
+    private int payloadSize;
+
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    private RequestDecryptor requestDecryptor;
+    private ResponseEncryptor responseEncryptor;
+    private GatewayKey gatewayKey;
+    private String clientPublicKey;
+    private byte[] requestEnvelope;
+    private byte[] responseBody;
+
+    @Setup
+    public void setUp() throws Exception {
+        SharedKeyCache sharedKeyCache = BenchmarkFixtures.sharedKeyCache();
+        KeyRing keyRing = BenchmarkFixtures.keyRing(sharedKeyCache);
+        requestDecryptor = BenchmarkFixtures.requestDecryptor(sharedKeyCache, keyRing);
+        responseEncryptor = BenchmarkFixtures.responseEncryptor(sharedKeyCache);
+        gatewayKey = keyRing.current();
+
+        TweetNaclFast.Box.KeyPair client = TweetNaclFast.Box.keyPair();
+        clientPublicKey = Base64.getEncoder().encodeToString(client.getPublicKey());
+        String plainText = BenchmarkFixtures.payload(payloadSize);
+
+        EncryptedPayloadDTO envelope = CrytoUtil.encrypt(plainText,
+                new TweetNaclFast.Box(gatewayKey.getPublicKey(), client.getSecretKey()), client.getPublicKey());
+        envelope.setKeyId(gatewayKey.getKeyId());
+        requestEnvelope = BenchmarkFixtures.OBJECT_MAPPER.writeValueAsBytes(envelope);
+        responseBody = plainText.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public DataBuffer decryptRequest() throws Exception {
+        return requestDecryptor.decryptRequest(bufferFactory.wrap(requestEnvelope), exchange(), bufferFactory);
+    }
+
+    @Benchmark
+    public DataBuffer encryptResponse() {
+        ServerWebExchange exchange = exchange();
+        exchange.getAttributes().put(USER_PUBLIC_KEY_BASE64, clientPublicKey);
+        return responseEncryptor.encryptResponse(Flux.just(bufferFactory.wrap(responseBody)), exchange,
+                        new HttpHeaders(), bufferFactory)
+                .block();
+    }
+
+    private ServerWebExchange exchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/benchmark"));
+        exchange.getAttributes().put(GatewayKey.ATTRIBUTE, gatewayKey);
+        return exchange;
+    }
+}
@@ -0,0 +1,56 @@
+package com.secure_gateway.benchmark;
+
+import com.secure_gateway.config.RouteClassification;
+import com.secure_gateway.config.RouterValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link RouterValidator} predicates on a repeated path (cache hit) and on always-new paths (full automaton pass).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterValidatorBenchmark {
+
+    @Param({"/auth/v1/login", "/portal/v1/accounts/summary", "/portal/v1/change-password"})
+    private String path;
+
+    private final AtomicLong counter = new AtomicLong();
+    private RouterValidator routerValidator;
+
+    @Setup
+    public void setUp() {
+        routerValidator = BenchmarkFixtures.routerValidator();
+    }
+
+    @Benchmark
+    public boolean isSecured() {
+        return routerValidator.isSecured.test(path);
+    }
+
+    @Benchmark
+    public boolean is2FA() {
+        return routerValidator.is2FA.test(path);
+    }
+
+    @Benchmark
+    public RouteClassification classifyUncached() {
+        return routerValidator.classify(path + "/" + counter.incrementAndGet());
+    }
+}
@@ -0,0 +1,148 @@
+package com.secure_gateway.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iwebpp.crypto.TweetNaclFast;
+import com.secure_gateway.dto.EncryptedPayloadDTO;
+import com.secure_gateway.helper.GatewayKey;
+import com.secure_gateway.util.CrytoUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Client side of the harness. Each simulated user has its own key pair and token; requests are boxed for the
+ * gateway's current key exactly as a mobile or web client would, and successful responses are opened and compared
+ * with the payload that was sent.
+ */
+final class LoadClient implements AutoCloseable {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final HttpClient httpClient;
+    private final ConnectionProvider connectionProvider;
+    private final GatewayKey gatewayKey;
+    private final User[] users;
+    private final Map<Scenario, String> payloads = new EnumMap<>(Scenario.class);
+    private final boolean verify;
+
+    LoadClient(int gatewayPort, GatewayKey gatewayKey, LoadSettings settings) {
+        this.connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(settings.concurrency())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.httpClient = HttpClient.create(connectionProvider)
+                .baseUrl("http://127.0.0.1:" + gatewayPort)
+                .responseTimeout(Duration.ofSeconds(60));
+        this.gatewayKey = gatewayKey;
+        this.verify = settings.verify();
+
+        Instant expiresAt = Instant.now().plus(Duration.ofDays(1));
+        this.users = new User[settings.users()];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new User(String.format("loadtest-%06d", i), gatewayKey, expiresAt);
+        }
+        for (Scenario scenario : settings.scenarios()) {
+            payloads.put(scenario, payload(settings.payloadSize(scenario)));
+        }
+    }
+
+    /**
+     * Sends one request for the scenario from a random user. Completes with {@code true} when the gateway answered
+     * with the scenario's expected status (and, for successful calls, the echoed payload when verification is on).
+     */
+    Mono<Boolean> send(Scenario scenario) {
+        User user = users[ThreadLocalRandom.current().nextInt(users.length)];
+        String payload = payloads.get(scenario);
+        byte[] envelope = user.seal(payload, scenario.tampered());
+
+        return httpClient
+                .headers(headers -> {
+                    headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+                    if (scenario.authenticated()) {
+                        headers.set(HttpHeaderNames.AUTHORIZATION, "Bearer " + user.token);
+                    }
+                })
+                .post()
+                .uri(scenario.path())
+                .send(Mono.fromSupplier(() -> Unpooled.wrappedBuffer(envelope)))
+                .responseSingle((response, body) -> body.asByteArray()
+                        .defaultIfEmpty(new byte[0])
+                        .map(bytes -> response.status().code() == scenario.expectedStatus()
+                                && (!verify || scenario.expectedStatus() != 200 || user.openEcho(bytes, payload))))
+                .onErrorReturn(false);
+    }
+
+    @Override
+    public void close() {
+        connectionProvider.disposeLater().block(Duration.ofSeconds(10));
+    }
+
+    private static String payload(int size) {
+        StringBuilder builder = new StringBuilder(size);
+        builder.append("{\"data\":\"");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (builder.length() < size - 2) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.append("\"}").toString();
+    }
+
+    private static final class User {
+        private final String token;
+        private final TweetNaclFast.Box box;
+        private final byte[] publicKey;
+        private final String keyId;
+
+        User(String userId, GatewayKey gatewayKey, Instant expiresAt) {
+            TweetNaclFast.Box.KeyPair keyPair = TweetNaclFast.Box.keyPair();
+            this.token = LoadTokens.issue(userId, expiresAt);
+            this.publicKey = keyPair.getPublicKey();
+            this.keyId = gatewayKey.getKeyId();
+            this.box = new TweetNaclFast.Box(gatewayKey.getPublicKey(), keyPair.getSecretKey());
+            this.box.before();
+        }
+
+        byte[] seal(String payload, boolean tampered) {
+            EncryptedPayloadDTO envelope = CrytoUtil.encrypt(payload, box, publicKey);
+            envelope.setKeyId(keyId);
+            if (tampered) {
+                byte[] cipherText = Base64.getDecoder().decode(envelope.getCipherText());
+                cipherText[cipherText.length - 1] ^= 0x01;
+                envelope.setCipherText(Base64.getEncoder().encodeToString(cipherText));
+            }
+            try {
+                return OBJECT_MAPPER.writeValueAsBytes(envelope);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * The gateway encrypts the whole backend body into a single envelope.
+         */
+        boolean openEcho(byte[] body, String expected) {
+            byte[] plainText;
+            try {
+                EncryptedPayloadDTO envelope = OBJECT_MAPPER.readValue(body, EncryptedPayloadDTO.class);
+                byte[] cipherText = Base64.getDecoder().decode(envelope.getCipherText());
+                plainText = CrytoUtil.open(cipherText, 0, cipherText.length,
+                        Base64.getDecoder().decode(envelope.getNonce()), box);
+            } catch (IOException | IllegalArgumentException e) {
+                return false;
+            }
+            return Arrays.equals(plainText, expected.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
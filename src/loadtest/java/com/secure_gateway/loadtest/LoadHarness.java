@@ -0,0 +1,155 @@
+package com.secure_gateway.loadtest;
+
+import com.secure_gateway.SecureGatewayApplication;
+import com.secure_gateway.helper.GatewayKey;
+import com.secure_gateway.helper.KeyRing;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Offline end-to-end load test. Boots the gateway with its real filter chain on a loopback port, routes everything
+ * to an in-process {@link StubBackend}, points RCAS at {@link StubRcas} and swaps the session store, key tables and
+ * JWT verification for {@link LoadTestStubs}. Nothing leaves the machine.
+ * <p>
+ * Each scenario is run closed-loop: {@code loadtest.concurrency} workers send one request at a time for the warmup
+ * period (discarded) and then for the measured duration. Throughput and p50/p99/p99.9 latency are printed and
+ * written as CSV to {@code loadtest.report}.
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.concurrency=128 -Dloadtest.session-latency=PT2MS
+ * </pre>
+ * Client-side boxing and verification run on the same machine, so leave headroom or set
+ * {@code -Dloadtest.verify=false} when the client becomes the bottleneck.
+ */
+@Slf4j
+public final class LoadHarness {
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        LoadSettings settings = LoadSettings.fromSystemProperties();
+        List<ScenarioResult> results = new ArrayList<>();
+
+        try (StubBackend backend = StubBackend.start(settings.backendLatency());
+             StubRcas rcas = StubRcas.start(settings.rcasLatency());
+             ConfigurableApplicationContext gateway = startGateway(settings, backend, rcas)) {
+            int port = Integer.parseInt(gateway.getEnvironment().getRequiredProperty("local.server.port"));
+            GatewayKey gatewayKey = awaitKeys(gateway.getBean(KeyRing.class));
+
+            try (LoadClient client = new LoadClient(port, gatewayKey, settings)) {
+                for (Scenario scenario : settings.scenarios()) {
+                    log.info("Warming up {} for {}", scenario, settings.warmup());
+                    run(client, scenario, settings.warmup(), settings.concurrency());
+                    log.info("Measuring {} for {}", scenario, settings.duration());
+                    ScenarioResult result = run(client, scenario, settings.duration(), settings.concurrency());
+                    results.add(result);
+                    log.info("{}", result.toRow());
+                }
+            }
+        }
+
+        report(settings, results);
+    }
+
+    /**
+     * Keys are provisioned in the background after startup; wait for them like the readiness probe would.
+     */
+    private static GatewayKey awaitKeys(KeyRing keyRing) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!keyRing.isLoaded()) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("Gateway keys were not provisioned within 30 seconds");
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return keyRing.current();
+    }
+
+    private static ConfigurableApplicationContext startGateway(LoadSettings settings, StubBackend backend, StubRcas rcas) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.address", "127.0.0.1");
+        properties.put("server.port", "0");
+        properties.put("management.server.port", "-1");
+        properties.put("eureka.client.enabled", "false");
+        properties.put("spring.cloud.discovery.enabled", "false");
+        properties.put("spring.autoconfigure.exclude", String.join(",",
+                "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+                "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration",
+                "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration"));
+        properties.put("logging.level.com.secure_gateway", "WARN");
+        properties.put("logging.level.com.secure_gateway.loadtest", "INFO");
+        properties.put("rcas.wsQueryUserProfile.url", rcas.queryUserProfileUrl());
+        properties.put("loadtest.session-latency", settings.sessionLatency().toString());
+
+        String route = "spring.cloud.gateway.server.webflux.routes[0].";
+        properties.put(route + "id", "loadtest-backend");
+        properties.put(route + "uri", "http://127.0.0.1:" + backend.port());
+        properties.put(route + "predicates[0]", "Path=/**");
+        properties.put(route + "filters[0]", "JwtTokenHeaderValidationFilter");
+        properties.put(route + "filters[1]", "PayloadEncryptionFilter");
+
+        return new SpringApplicationBuilder(SecureGatewayApplication.class, LoadTestStubs.class)
+                .properties(properties)
+                .run();
+    }
+
+    private static ScenarioResult run(LoadClient client, Scenario scenario, Duration duration, int concurrency) {
+        Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        AtomicLong succeeded = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        Flux.range(0, concurrency)
+                .flatMap(worker -> Mono.defer(() -> {
+                            long sent = System.nanoTime();
+                            return client.send(scenario).doOnNext(ok -> {
+                                latencies.recordValue(Math.min(System.nanoTime() - sent, HIGHEST_TRACKABLE_NANOS));
+                                (ok ? succeeded : failed).incrementAndGet();
+                            });
+                        })
+                        .repeat(() -> System.nanoTime() < deadline), concurrency)
+                .blockLast();
+
+        return new ScenarioResult(scenario, Duration.ofNanos(System.nanoTime() - start),
+                succeeded.get(), failed.get(), latencies);
+    }
+
+    private static void report(LoadSettings settings, List<ScenarioResult> results) throws IOException {
+        StringBuilder table = new StringBuilder()
+                .append(String.format("%nconcurrency=%d users=%d payload=%dB large-payload=%dB latency backend=%s rcas=%s session=%s%n",
+                        settings.concurrency(), settings.users(), settings.payloadSize(), settings.largePayloadSize(),
+                        settings.backendLatency(), settings.rcasLatency(), settings.sessionLatency()))
+                .append(ScenarioResult.header()).append(System.lineSeparator());
+        List<String> csv = new ArrayList<>();
+        csv.add(ScenarioResult.CSV_HEADER);
+        for (ScenarioResult result : results) {
+            table.append(result.toRow()).append(System.lineSeparator());
+            csv.add(result.toCsv());
+        }
+        System.out.println(table);
+
+        if (settings.report().getParent() != null) {
+            Files.createDirectories(settings.report().getParent());
+        }
+        Files.write(settings.report(), csv);
+        log.info("Report written to {}", settings.report().toAbsolutePath());
+    }
+}
@@ -0,0 +1,54 @@
+package com.secure_gateway.loadtest;
+
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.stream.Collectors;
+
+/**
+ * Harness settings, read from {@code loadtest.*} system properties. The {@code loadtest} Maven profile forwards each
+ * of them, so they can be overridden on the command line, e.g. {@code -Dloadtest.concurrency=256}.
+ */
+record LoadSettings(Duration warmup,
+                    Duration duration,
+                    int concurrency,
+                    int users,
+                    EnumSet<Scenario> scenarios,
+                    int payloadSize,
+                    int largePayloadSize,
+                    Duration backendLatency,
+                    Duration rcasLatency,
+                    Duration sessionLatency,
+                    boolean verify,
+                    Path report) {
+
+    static LoadSettings fromSystemProperties() {
+        return new LoadSettings(
+                Duration.parse(property("warmup", "PT10S")),
+                Duration.parse(property("duration", "PT30S")),
+                Integer.parseInt(property("concurrency", "64")),
+                Integer.parseInt(property("users", "1000")),
+                Arrays.stream(property("scenarios", "OPEN,SECURED,LARGE_PAYLOAD,ERROR_PATH").split(","))
+                        .map(String::trim)
+                        .map(Scenario::valueOf)
+                        .collect(Collectors.toCollection(() -> EnumSet.noneOf(Scenario.class))),
+                (int) DataSize.parse(property("payload-size", "1KB")).toBytes(),
+                (int) DataSize.parse(property("large-payload-size", "1MB")).toBytes(),
+                Duration.parse(property("backend-latency", "PT0S")),
+                Duration.parse(property("rcas-latency", "PT0S")),
+                Duration.parse(property("session-latency", "PT0S")),
+                Boolean.parseBoolean(property("verify", "true")),
+                Path.of(property("report", "target/loadtest-report.csv")));
+    }
+
+    int payloadSize(Scenario scenario) {
+        return scenario == Scenario.LARGE_PAYLOAD ? largePayloadSize : payloadSize;
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+}
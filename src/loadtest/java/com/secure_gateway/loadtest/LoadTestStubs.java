@@ -0,0 +1,129 @@
+package com.secure_gateway.loadtest;
+
+import com.m2e.gateway.repository.CorpUserTokenRepository;
+import com.m2e.gateway.repository.SecretkeyGeneratorRepository;
+import com.m2e.model.sso.base.CorpUserToken;
+import com.m2e.model.sso.base.SecretkeyGenerator;
+import com.m2e.utils.jwtutils.JwtUtil;
+import com.secure_gateway.repository.GatewayKeyRepository;
+import com.secure_gateway.repository.SessionTokenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Stand-ins for everything the gateway reaches outside the process apart from RCAS: the session store, the gateway
+ * key tables and JWT verification. Registered as an extra source of the harness application (not component
+ * scanned), with {@code @Primary} so they win over the library beans.
+ * <p>
+ * The session store blocks the calling thread for the configured latency per query, like the JDBC repositories it
+ * replaces.
+ */
+class LoadTestStubs {
+    private final List<SecretkeyGenerator> gatewayKeys = new CopyOnWriteArrayList<>();
+
+    @Bean
+    @Primary
+    CorpUserTokenRepository loadTestCorpUserTokenRepository(
+            @Value("${loadtest.session-latency:PT0S}") Duration latency) {
+        return mock(CorpUserTokenRepository.class, invocation -> switch (invocation.getMethod().getName()) {
+            case "findByTokenId", "findByMobileTokenId" -> {
+                if (!latency.isZero()) {
+                    LockSupport.parkNanos(latency.toNanos());
+                }
+                yield Optional.of(new CorpUserToken());
+            }
+            default -> RETURNS_DEFAULTS.answer(invocation);
+        });
+    }
+
+    /**
+     * Batched counterpart of the session store: every token exists, one latency per query.
+     */
+    @Bean
+    @Primary
+    SessionTokenRepository loadTestSessionTokenRepository(
+            @Value("${loadtest.session-latency:PT0S}") Duration latency) {
+        return mock(SessionTokenRepository.class, invocation -> switch (invocation.getMethod().getName()) {
+            case "findByTokenIdIn", "findByMobileTokenIdIn" -> {
+                if (!latency.isZero()) {
+                    LockSupport.parkNanos(latency.toNanos());
+                }
+                Collection<String> tokens = invocation.getArgument(0);
+                boolean web = invocation.getMethod().getName().equals("findByTokenIdIn");
+                yield tokens.stream()
+                        .map(token -> web
+                                ? (SessionTokenRepository.TokenIdView) () -> token
+                                : (SessionTokenRepository.MobileTokenIdView) () -> token)
+                        .toList();
+            }
+            default -> RETURNS_DEFAULTS.answer(invocation);
+        });
+    }
+
+    @Bean
+    @Primary
+    SecretkeyGeneratorRepository loadTestSecretkeyGeneratorRepository() {
+        return mock(SecretkeyGeneratorRepository.class);
+    }
+
+    @Bean
+    @Primary
+    GatewayKeyRepository loadTestGatewayKeyRepository() {
+        return mock(GatewayKeyRepository.class, invocation -> {
+            if (invocation.getMethod().getName().equals("insert")) {
+                SecretkeyGenerator inserted = invocation.getArgument(0);
+                synchronized (gatewayKeys) {
+                    if (gatewayKeys.stream().anyMatch(key -> key.getId().equals(inserted.getId()))) {
+                        throw new DataIntegrityViolationException("Duplicate gateway key " + inserted.getId());
+                    }
+                    gatewayKeys.add(inserted);
+                }
+                return null;
+            }
+            if (invocation.getMethod().getName().equals("findByCreatedDateAfterOrderByCreatedDateDesc")) {
+                OffsetDateTime after = invocation.getArgument(0);
+                List<SecretkeyGenerator> keys = new ArrayList<>();
+                gatewayKeys.stream()
+                        .filter(key -> key.getCreatedDate().isAfter(after))
+                        .sorted(Comparator.comparing(SecretkeyGenerator::getCreatedDate).reversed())
+                        .forEach(keys::add);
+                return keys;
+            }
+            return RETURNS_DEFAULTS.answer(invocation);
+        });
+    }
+
+    /**
+     * Accepts every {@link LoadTokens} token as a web session of a USER.
+     */
+    @Bean
+    @Primary
+    JwtUtil loadTestJwtUtil() {
+        return mock(JwtUtil.class, invocation -> switch (invocation.getMethod().getName()) {
+            case "validateJWTToken" -> HttpStatus.OK;
+            case "extractToken" -> invocation.<String>getArgument(0).substring(JwtUtil.BEARER.length());
+            case "extractUserId" -> LoadTokens.userId(invocation.getArgument(0));
+            case "extractIsWeb" -> true;
+            case "extractRoles" -> invocation.getMethod().getReturnType().isArray()
+                    ? new String[]{"USER"}
+                    : List.of("USER");
+            default -> RETURNS_DEFAULTS.answer(invocation);
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package com.secure_gateway.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Unsigned JWT-shaped tokens for the stubbed {@code JwtUtil}. The payload carries {@code sub} and {@code exp}, which
+ * is all the gateway reads itself; signature checks are replaced by the stub.
+ */
+final class LoadTokens {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final String HEADER = ENCODER.encodeToString("{\"alg\":\"none\",\"typ\":\"JWT\"}"
+            .getBytes(StandardCharsets.UTF_8));
+
+    private LoadTokens() {
+    }
+
+    static String issue(String userId, Instant expiresAt) {
+        try {
+            byte[] payload = OBJECT_MAPPER.writeValueAsBytes(Map.of("sub", userId, "exp", expiresAt.getEpochSecond()));
+            return HEADER + "." + ENCODER.encodeToString(payload) + ".loadtest";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String userId(String token) {
+        try {
+            String payload = token.substring(token.indexOf('.') + 1, token.lastIndexOf('.'));
+            return OBJECT_MAPPER.readTree(Base64.getUrlDecoder().decode(payload)).path("sub").asText();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.secure_gateway.loadtest;
+
+/**
+ * Traffic shapes driven through the gateway. Every scenario sends a NaCl-boxed JSON envelope; the stub backend
+ * echoes the decrypted body, so successful responses can be opened and compared with what was sent.
+ */
+enum Scenario {
+    /** Open endpoint: payload decryption and response encryption only. */
+    OPEN("/auth/v1/login", false, false, 200),
+    /** Secured endpoint: JWT validation, RCAS profile lookup and session check in front of the crypto path. */
+    SECURED("/api/v1/loadtest/accounts", true, false, 200),
+    /** Secured endpoint with the large payload size, exercising aggregation limits and the crypto pool. */
+    LARGE_PAYLOAD("/api/v1/loadtest/documents", true, false, 200),
+    /** Open endpoint with a tampered cipher text, so the request fails to open and the gateway writes its error. */
+    ERROR_PATH("/auth/v1/login", false, true, 500);
+
+    private final String path;
+    private final boolean authenticated;
+    private final boolean tampered;
+    private final int expectedStatus;
+
+    Scenario(String path, boolean authenticated, boolean tampered, int expectedStatus) {
+        this.path = path;
+        this.authenticated = authenticated;
+        this.tampered = tampered;
+        this.expectedStatus = expectedStatus;
+    }
+
+    String path() {
+        return path;
+    }
+
+    boolean authenticated() {
+        return authenticated;
+    }
+
+    boolean tampered() {
+        return tampered;
+    }
+
+    int expectedStatus() {
+        return expectedStatus;
+    }
+}
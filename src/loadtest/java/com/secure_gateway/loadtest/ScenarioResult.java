@@ -0,0 +1,40 @@
+package com.secure_gateway.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Measured outcome of one scenario. Latencies are end-to-end as seen by the client, in nanoseconds.
+ */
+record ScenarioResult(Scenario scenario, Duration elapsed, long succeeded, long failed, Histogram latencies) {
+    static final String CSV_HEADER = "scenario,requests,failed,throughput_rps,p50_ms,p99_ms,p999_ms,max_ms";
+
+    long requests() {
+        return succeeded + failed;
+    }
+
+    double throughput() {
+        return requests() / (elapsed.toNanos() / 1e9);
+    }
+
+    String toCsv() {
+        return String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f", scenario, requests(), failed,
+                throughput(), millis(50), millis(99), millis(99.9), latencies.getMaxValue() / 1e6);
+    }
+
+    String toRow() {
+        return String.format(Locale.ROOT, "%-14s %10d %8d %12.1f %9.3f %9.3f %9.3f %9.3f", scenario, requests(),
+                failed, throughput(), millis(50), millis(99), millis(99.9), latencies.getMaxValue() / 1e6);
+    }
+
+    static String header() {
+        return String.format(Locale.ROOT, "%-14s %10s %8s %12s %9s %9s %9s %9s", "scenario", "requests", "failed",
+                "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+    }
+
+    private double millis(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1e6;
+    }
+}
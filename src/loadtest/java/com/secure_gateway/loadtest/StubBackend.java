@@ -0,0 +1,48 @@
+package com.secure_gateway.loadtest;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+
+/**
+ * In-process Netty backend behind the gateway routes. POST requests get their (already decrypted) body echoed back
+ * after the configured latency.
+ */
+@Slf4j
+final class StubBackend implements AutoCloseable {
+    private final DisposableServer server;
+
+    private StubBackend(DisposableServer server) {
+        this.server = server;
+    }
+
+    static StubBackend start(Duration latency) {
+        DisposableServer server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes.post("/**", (request, response) -> response
+                        .header(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                        .send(delayed(request.receive().aggregate().retain(), latency))))
+                .bindNow();
+        log.info("Stub backend listening on port {} with {} latency", server.port(), latency);
+        return new StubBackend(server);
+    }
+
+    int port() {
+        return server.port();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    static <T> Mono<T> delayed(Mono<T> mono, Duration latency) {
+        return latency.isZero() ? mono : mono.delayElement(latency);
+    }
+}
@@ -0,0 +1,61 @@
+package com.secure_gateway.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import lombok.extern.slf4j.Slf4j;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Local stand-in for RCAS {@code wsQueryUserProfile}: every user exists and the profile is returned after the
+ * configured latency.
+ */
+@Slf4j
+final class StubRcas implements AutoCloseable {
+    static final String QUERY_USER_PROFILE_PATH = "/rcas/wsQueryUserProfile";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final DisposableServer server;
+
+    private StubRcas(DisposableServer server) {
+        this.server = server;
+    }
+
+    static StubRcas start(Duration latency) {
+        DisposableServer server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes.post(QUERY_USER_PROFILE_PATH, (request, response) -> response
+                        .header(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                        .sendString(StubBackend.delayed(request.receive().aggregate().asString()
+                                .map(StubRcas::profile), latency))))
+                .bindNow();
+        log.info("Stub RCAS listening on port {} with {} latency", server.port(), latency);
+        return new StubRcas(server);
+    }
+
+    String queryUserProfileUrl() {
+        return "http://127.0.0.1:" + server.port() + QUERY_USER_PROFILE_PATH;
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    private static String profile(String requestBody) {
+        try {
+            String userId = OBJECT_MAPPER.readTree(requestBody).path("userId").asText();
+            return OBJECT_MAPPER.writeValueAsString(Map.of("userId", userId, "status", "ACTIVE"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
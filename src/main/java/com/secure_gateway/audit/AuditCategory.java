@@ -0,0 +1,15 @@
+package com.secure_gateway.audit;
+
+/**
+ * Audit event categories; each has its own sampling rate under {@code gateway.audit.sampling}.
+ */
+public enum AuditCategory {
+    /** Decrypted request envelopes. */
+    REQUEST_PAYLOAD,
+    /** Encrypted response envelopes. */
+    RESPONSE_PAYLOAD,
+    /** JWT verification and role checks. */
+    AUTH,
+    /** RCAS user profile calls. */
+    RCAS
+}
@@ -0,0 +1,13 @@
+package com.secure_gateway.audit;
+
+/**
+ * Raw audit event as captured on the request path. Field values are kept as given (payloads as the original byte
+ * arrays) and only redacted and formatted by the writer thread. Unused field slots are {@code null}.
+ */
+record AuditEvent(long timestamp,
+                  AuditCategory category,
+                  String type,
+                  String key1, Object value1,
+                  String key2, Object value2,
+                  String key3, Object value3) {
+}
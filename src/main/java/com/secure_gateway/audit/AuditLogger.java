@@ -0,0 +1,216 @@
+package com.secure_gateway.audit;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secure_gateway.util.TokenUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured audit and trace events, kept off the request path.
+ * <p>
+ * {@code record} decides sampling first, so unsampled calls cost a random draw and nothing else. Sampled events are
+ * put into a lock-free ring buffer with their raw field values; a single background writer redacts, truncates and
+ * formats them as one JSON line each on the {@value #AUDIT_LOGGER} logger. When the buffer is full the event is
+ * dropped and counted in {@code gateway.audit.events{outcome=dropped}} rather than blocking the caller.
+ * <p>
+ * Fields named in {@code gateway.audit.redact-fields} are written as their size, those in
+ * {@code gateway.audit.digest-fields} as a short SHA-256 prefix; payloads therefore never reach the log in clear.
+ */
+@Component
+@Slf4j
+public class AuditLogger implements SmartLifecycle {
+    public static final String AUDIT_LOGGER = "gateway.audit";
+
+    private static final Logger AUDIT = LoggerFactory.getLogger(AUDIT_LOGGER);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int DIGEST_PREFIX = 12;
+
+    private final AuditProperties properties;
+    private final AuditRingBuffer<AuditEvent> buffer;
+    private final double[] sampleRates;
+    private final Counter[] dropped;
+    private final Counter[] written;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile boolean running;
+    private volatile Thread writer;
+
+    public AuditLogger(AuditProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.buffer = new AuditRingBuffer<>(properties.getBufferSize());
+
+        AuditCategory[] categories = AuditCategory.values();
+        this.sampleRates = new double[categories.length];
+        this.dropped = new Counter[categories.length];
+        this.written = new Counter[categories.length];
+        for (AuditCategory category : categories) {
+            int i = category.ordinal();
+            sampleRates[i] = properties.isEnabled() ? properties.getSampling().getOrDefault(category, 0.0) : 0.0;
+            dropped[i] = counter(meterRegistry, category, "dropped");
+            written[i] = counter(meterRegistry, category, "written");
+        }
+        Gauge.builder("gateway.audit.buffer.size", buffer, AuditRingBuffer::size)
+                .description("Audit events waiting for the writer")
+                .register(meterRegistry);
+    }
+
+    /**
+     * True when an event of this category would be sampled; lets callers skip building expensive field values.
+     */
+    public boolean isEnabled(AuditCategory category) {
+        return sampleRates[category.ordinal()] > 0.0;
+    }
+
+    public void record(AuditCategory category, String type, String key1, Object value1) {
+        record(category, type, key1, value1, null, null, null, null);
+    }
+
+    public void record(AuditCategory category, String type, String key1, Object value1, String key2, Object value2) {
+        record(category, type, key1, value1, key2, value2, null, null);
+    }
+
+    public void record(AuditCategory category, String type, String key1, Object value1, String key2, Object value2,
+                       String key3, Object value3) {
+        if (!sampled(category)) {
+            return;
+        }
+        AuditEvent event = new AuditEvent(System.currentTimeMillis(), category, type,
+                key1, value1, key2, value2, key3, value3);
+        if (!buffer.offer(event)) {
+            dropped[category.ordinal()].increment();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::drain, "audit-writer");
+        thread.setDaemon(true);
+        thread.start();
+        writer = thread;
+        log.info("Audit pipeline started: {} slots, sampling {}", buffer.capacity(), properties.getSampling());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private boolean sampled(AuditCategory category) {
+        double rate = sampleRates[category.ordinal()];
+        return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private void drain() {
+        while (running) {
+            if (!writeNext()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        while (writeNext()) {
+            // flush what was queued before shutdown
+        }
+    }
+
+    private boolean writeNext() {
+        AuditEvent event = buffer.poll();
+        if (event == null) {
+            return false;
+        }
+        try {
+            AUDIT.info(format(event));
+            written[event.category().ordinal()].increment();
+        } catch (Exception e) {
+            log.warn("Failed to write audit event {}", event.type(), e);
+        }
+        return true;
+    }
+
+    private String format(AuditEvent event) throws IOException {
+        StringWriter line = new StringWriter(256);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(line)) {
+            generator.writeStartObject();
+            generator.writeStringField("timestamp", Instant.ofEpochMilli(event.timestamp()).toString());
+            generator.writeStringField("category", event.category().name());
+            generator.writeStringField("type", event.type());
+            writeField(generator, event.key1(), event.value1());
+            writeField(generator, event.key2(), event.value2());
+            writeField(generator, event.key3(), event.value3());
+            generator.writeEndObject();
+        }
+        return line.toString();
+    }
+
+    private void writeField(JsonGenerator generator, String key, Object value) throws IOException {
+        if (key == null) {
+            return;
+        }
+        generator.writeFieldName(key);
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Number number) {
+            generator.writeNumber(number.toString());
+        } else if (value instanceof Boolean bool) {
+            generator.writeBoolean(bool);
+        } else {
+            generator.writeString(redact(key, value));
+        }
+    }
+
+    private String redact(String key, Object value) {
+        if (properties.getDigestFields().contains(key)) {
+            return "sha256:" + TokenUtil.digest(String.valueOf(value)).substring(0, DIGEST_PREFIX);
+        }
+        if (properties.getRedactFields().contains(key)) {
+            return value instanceof byte[] bytes
+                    ? "[redacted " + bytes.length + " bytes]"
+                    : "[redacted " + String.valueOf(value).length() + " chars]";
+        }
+        int max = properties.getMaxFieldLength();
+        if (value instanceof byte[] bytes) {
+            String text = new String(bytes, 0, Math.min(bytes.length, max), StandardCharsets.UTF_8);
+            return bytes.length > max ? text + "...(" + bytes.length + " bytes)" : text;
+        }
+        String text = String.valueOf(value);
+        return text.length() > max ? text.substring(0, max) + "...(" + text.length() + " chars)" : text;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, AuditCategory category, String outcome) {
+        return Counter.builder("gateway.audit.events")
+                .description("Audit events written or dropped because the buffer was full")
+                .tag("category", category.name().toLowerCase(Locale.ROOT))
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
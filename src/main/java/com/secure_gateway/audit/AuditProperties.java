@@ -0,0 +1,32 @@
+package com.secure_gateway.audit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Audit pipeline settings bound from {@code gateway.audit.*}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = AuditProperties.PREFIX)
+public class AuditProperties {
+    public static final String PREFIX = "gateway.audit";
+
+    private boolean enabled = true;
+    /** Ring buffer slots; rounded up to a power of two. Events arriving while it is full are dropped. */
+    private int bufferSize = 8192;
+    /** Fraction of events recorded per category, 0.0 to 1.0; categories not listed are recorded at 0.0. */
+    private Map<AuditCategory, Double> sampling = new EnumMap<>(AuditCategory.class);
+    /** Field names whose values are replaced by their size (payloads) or a short digest (tokens). */
+    private Set<String> redactFields = new HashSet<>(Set.of("plaintext", "profile", "requestBody"));
+    /** Field names holding bearer tokens or keys; written as the first 12 hex digits of their SHA-256. */
+    private Set<String> digestFields = new HashSet<>(Set.of("token"));
+    /** Longer non-redacted values are truncated to this many characters. */
+    private int maxFieldLength = 256;
+}
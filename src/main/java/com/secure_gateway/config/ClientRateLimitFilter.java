@@ -0,0 +1,197 @@
+package com.secure_gateway.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.m2e.utils.jwtutils.JwtUtil;
+import com.secure_gateway.dto.JwtClaimsContext;
+import com.secure_gateway.helper.VerifiedTokenCache;
+import com.secure_gateway.util.TokenUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-client token buckets checked ahead of every other route filter, so a rejected request never reaches body
+ * aggregation, decryption, JWT verification or the session repository.
+ * <p>
+ * Buckets are keyed by one of:
+ * <ul>
+ *     <li>{@code USER_ID}: the user id of an already verified token ({@link VerifiedTokenCache}); tokens that have not
+ *     been verified yet are unknown and fall back to the remote address, so forged tokens cannot drain another user's
+ *     bucket</li>
+ *     <li>{@code CLIENT_PUBLIC_KEY}: the {@value PayloadEncryptionFilter#CLIENT_PUBLIC_KEY_HEADER} header when it is a
+ *     Base64 32-byte key, otherwise the remote address; the header is unauthenticated, so anything else would let a
+ *     client pick a fresh bucket per request and fill the bucket map with arbitrarily long keys. A client can still
+ *     generate a new key pair per request, so routes keyed this way should also carry a {@code REMOTE_ADDRESS}
+ *     limit</li>
+ *     <li>{@code REMOTE_ADDRESS}: the peer address of the connection</li>
+ * </ul>
+ * Each bucket is a single {@link AtomicLong} updated by CAS (GCRA: the theoretical arrival time of the next request),
+ * and the bucket map is a bounded Caffeine cache that drops buckets idle for {@code gateway.rate-limit.idle-timeout}.
+ * An evicted bucket is simply full again on the next request.
+ */
+@Component
+@Slf4j
+public class ClientRateLimitFilter extends AbstractGatewayFilterFactory<ClientRateLimitFilter.Config> {
+    private static final String UNKNOWN = "unknown";
+
+    private final JwtUtil jwtUtil;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${gateway.rate-limit.replenish-rate:50}")
+    private double defaultReplenishRate;
+    @Value("${gateway.rate-limit.burst-capacity:100}")
+    private int defaultBurstCapacity;
+    @Value("${gateway.rate-limit.max-keys:100000}")
+    private long maxKeys;
+    @Value("${gateway.rate-limit.idle-timeout:PT10M}")
+    private Duration idleTimeout;
+
+    public ClientRateLimitFilter(JwtUtil jwtUtil, VerifiedTokenCache verifiedTokenCache, MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.jwtUtil = jwtUtil;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        KeyResolver keyResolver = config.getKeyResolver();
+        double replenishRate = config.getReplenishRate() != null ? config.getReplenishRate() : defaultReplenishRate;
+        int burstCapacity = config.getBurstCapacity() != null ? config.getBurstCapacity() : defaultBurstCapacity;
+        if (replenishRate <= 0 || burstCapacity < 1) {
+            throw new IllegalArgumentException("Rate limit needs a positive replenish rate and burst capacity");
+        }
+
+        String routeId = config.getRouteId() != null ? config.getRouteId() : UNKNOWN;
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / replenishRate);
+        long burstNanos = intervalNanos * (burstCapacity - 1);
+
+        Cache<String, AtomicLong> buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "gateway.rate-limit.buckets", "route", routeId);
+        Counter rejected = Counter.builder("gateway.rate-limit.rejected")
+                .description("Requests rejected by the client rate limiter")
+                .tag("route", routeId)
+                .tag("key", keyResolver.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry);
+
+        log.info("Rate limit for route {}: {} req/s per {}, burst {}", routeId, replenishRate, keyResolver,
+                burstCapacity);
+
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            String key = resolveKey(keyResolver, exchange);
+            AtomicLong bucket = buckets.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+
+            long waitNanos = acquire(bucket, intervalNanos, burstNanos);
+            if (waitNanos > 0) {
+                rejected.increment();
+                log.debug("Rate limit exceeded on route {} for {} {}", routeId, keyResolver, key);
+                long retryAfterSeconds = (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+                exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+                return exchange.getResponse().setComplete();
+            }
+            return chain.filter(exchange);
+        }, Ordered.HIGHEST_PRECEDENCE);
+    }
+
+    /**
+     * Takes one token from the bucket. Returns 0 when the request is allowed, otherwise the nanoseconds until the
+     * next token is available. The bucket holds the theoretical arrival time of the next request; it is allowed when
+     * that time is at most {@code burstNanos} ahead of now.
+     */
+    static long acquire(AtomicLong bucket, long intervalNanos, long burstNanos) {
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = bucket.get();
+            long base = arrival == Long.MIN_VALUE || arrival - now < 0 ? now : arrival;
+            long ahead = base - now;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (bucket.compareAndSet(arrival, base + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    private String resolveKey(KeyResolver keyResolver, ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        switch (keyResolver) {
+            case USER_ID -> {
+                String authorizationHeader = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+                if (authorizationHeader != null && authorizationHeader.startsWith(JwtUtil.BEARER)) {
+                    String jwtToken = jwtUtil.extractToken(authorizationHeader);
+                    JwtClaimsContext claims = StringUtils.hasText(jwtToken)
+                            ? verifiedTokenCache.getIfPresent(TokenUtil.digest(jwtToken)) : null;
+                    if (claims != null && claims.userId() != null) {
+                        return "user:" + claims.userId();
+                    }
+                }
+            }
+            case CLIENT_PUBLIC_KEY -> {
+                String clientPublicKey = request.getHeaders().getFirst(PayloadEncryptionFilter.CLIENT_PUBLIC_KEY_HEADER);
+                if (PayloadEncryptionFilter.isValidPublicKey(clientPublicKey)) {
+                    // Re-encoded, so the unused low bits of the last Base64 character cannot spell one key several ways
+                    return "key:" + Base64.getEncoder().encodeToString(Base64.getDecoder().decode(clientPublicKey));
+                }
+            }
+            case REMOTE_ADDRESS -> {
+                // Resolved below, shared with the fallbacks
+            }
+        }
+        return "addr:" + remoteAddress(request);
+    }
+
+    private static String remoteAddress(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null) {
+            return UNKNOWN;
+        }
+        return remoteAddress.getAddress() != null
+                ? remoteAddress.getAddress().getHostAddress() : remoteAddress.getHostString();
+    }
+
+    public enum KeyResolver {
+        USER_ID, CLIENT_PUBLIC_KEY, REMOTE_ADDRESS
+    }
+
+    @Getter
+    @Setter
+    public static class Config implements HasRouteId {
+        /** What a bucket belongs to. */
+        private KeyResolver keyResolver = KeyResolver.REMOTE_ADDRESS;
+        /** Tokens added per second; {@code gateway.rate-limit.replenish-rate} when unset. */
+        private Double replenishRate;
+        /** Maximum tokens a bucket holds; {@code gateway.rate-limit.burst-capacity} when unset. */
+        private Integer burstCapacity;
+        private String routeId;
+    }
+}
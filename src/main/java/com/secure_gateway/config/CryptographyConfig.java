@@ -4,50 +4,16 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.iwebpp.crypto.TweetNaclFast;
-import com.iwebpp.crypto.TweetNaclFast.Box.KeyPair;
-import com.m2e.gateway.repository.SecretkeyGeneratorRepository;
-import com.m2e.model.sso.base.SecretkeyGenerator;
-import jakarta.annotation.PostConstruct;
-import lombok.AllArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-import java.time.OffsetDateTime;
-import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
-
-import static com.m2e.gateway.constant.CryptographyConstant.*;
-
+/**
+ * Gateway key material is managed by {@link com.secure_gateway.helper.KeyRing}.
+ */
 @Configuration
-@AllArgsConstructor
+@EnableScheduling
 public class CryptographyConfig {
-    private final SecretkeyGeneratorRepository secretkeyGeneratorRepository;
-
-    @Bean("secretKeyMap")
-    public Map<String, String> generateSecretKey() {
-        Map<String, String> map = new HashMap<>();
-
-        KeyPair beKeypair = TweetNaclFast.Box.keyPair();
-        String publicKey = Base64.getEncoder().encodeToString(beKeypair.getPublicKey());
-        String secretKey = Base64.getEncoder().encodeToString(beKeypair.getSecretKey());
-
-        SecretkeyGenerator secretkeyGenerator = new SecretkeyGenerator();
-        secretkeyGenerator.setId(UUID.randomUUID().toString());
-        secretkeyGenerator.setPublicKey(publicKey);
-        secretkeyGenerator.setSecretKey(secretKey);
-        secretkeyGenerator.setCreatedDate(OffsetDateTime.now());
-
-        secretkeyGeneratorRepository.save(secretkeyGenerator);
-
-        map.put(ID, secretkeyGenerator.getId());
-        map.put(PUBLIC_KEY, secretkeyGenerator.getPublicKey());
-        map.put(SECRET_KEY, secretkeyGenerator.getSecretKey());
-
-        return map;
-    }
 
     @Bean("gatewayObjectMapper")
     public ObjectMapper objectMapper(){
@@ -58,4 +24,4 @@ public class CryptographyConfig {
 
         return objectMapper;
     }
-}
\ No newline at end of file
+}
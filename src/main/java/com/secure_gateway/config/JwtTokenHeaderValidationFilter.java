@@ -1,16 +1,27 @@
 package com.secure_gateway.config;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.m2e.gateway.consts.JWTokenRole;
 import com.m2e.gateway.dto.QueryUserProfileResponse;
-import com.m2e.model.sso.base.CorpUserToken;
-import com.m2e.gateway.repository.CorpUserTokenRepository;
 import com.m2e.utils.jwtutils.JwtUtil;
-import lombok.SneakyThrows;
+import com.secure_gateway.audit.AuditCategory;
+import com.secure_gateway.audit.AuditLogger;
+import com.secure_gateway.dto.JwtClaimsContext;
+import com.secure_gateway.helper.AdaptiveConcurrencyLimiter;
+import com.secure_gateway.helper.ConcurrencyLimits;
+import com.secure_gateway.helper.GatewayMetrics;
+import com.secure_gateway.helper.GatewayMetrics.Outcome;
+import com.secure_gateway.helper.GatewayMetrics.RouteMeters;
+import com.secure_gateway.helper.GatewayMetrics.Stage;
+import com.secure_gateway.helper.SessionTokenBatchLoader;
+import com.secure_gateway.helper.SessionValidityCache;
+import com.secure_gateway.helper.UserProfileCache;
+import com.secure_gateway.helper.VerifiedTokenCache;
+import com.secure_gateway.util.TokenUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -23,8 +34,7 @@ import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.util.EnumSet;
 
 @Component
 @Slf4j
@@ -35,16 +45,31 @@ public class JwtTokenHeaderValidationFilter extends AbstractGatewayFilterFactory
 
     private final JwtUtil jwtUtil;
     private final RouterValidator routerValidator;
-    private final CorpUserTokenRepository corpUserTokenRepository;
+    private final SessionTokenBatchLoader sessionTokenBatchLoader;
     private final WebClient webClient;
+    private final UserProfileCache userProfileCache;
+    private final SessionValidityCache sessionValidityCache;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final GatewayMetrics gatewayMetrics;
+    private final AuditLogger auditLogger;
+    private final ConcurrencyLimits concurrencyLimits;
 
     public JwtTokenHeaderValidationFilter(JwtUtil jwtUtil, RouterValidator routerValidator,
-                                          CorpUserTokenRepository corpUserTokenRepository, WebClient webClient) {
+                                          SessionTokenBatchLoader sessionTokenBatchLoader, WebClient webClient,
+                                          UserProfileCache userProfileCache, SessionValidityCache sessionValidityCache,
+                                          VerifiedTokenCache verifiedTokenCache, GatewayMetrics gatewayMetrics,
+                                          AuditLogger auditLogger, ConcurrencyLimits concurrencyLimits) {
         super(Config.class);
         this.jwtUtil = jwtUtil;
         this.routerValidator = routerValidator;
-        this.corpUserTokenRepository = corpUserTokenRepository;
+        this.sessionTokenBatchLoader = sessionTokenBatchLoader;
         this.webClient = webClient;
+        this.userProfileCache = userProfileCache;
+        this.sessionValidityCache = sessionValidityCache;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.gatewayMetrics = gatewayMetrics;
+        this.auditLogger = auditLogger;
+        this.concurrencyLimits = concurrencyLimits;
     }
 
     @Override
@@ -54,73 +79,126 @@ public class JwtTokenHeaderValidationFilter extends AbstractGatewayFilterFactory
         return (exchange, chain) -> {
             ServerHttpRequest request = exchange.getRequest();
             String uri = request.getURI().getPath();
-            if (routerValidator.isSecured.test(uri)) {
-                String jwtToken = extractJwtTokenFromRequest(exchange);
-                log.debug("(Filter) Extracted JWT Token: {}", jwtToken != null ? jwtToken : "null");
-
-                if (!StringUtils.hasText(jwtToken)) {
-                    log.error("(Filter) JWT Token is missing or empty");
-                    exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
-                    return exchange.getResponse().setComplete();
-                }
+            RouteClassification route = routerValidator.classify(uri);
+            if (!route.isSecured()) {
+                return chain.filter(exchange);
+            }
 
+            String jwtToken = extractJwtTokenFromRequest(exchange);
+
+            if (!StringUtils.hasText(jwtToken)) {
+                log.error("(Filter) JWT Token is missing or empty");
+                return reject(exchange, HttpStatus.FORBIDDEN);
+            }
+
+            RouteMeters meters = gatewayMetrics.forExchange(exchange);
+            long jwtStart = System.nanoTime();
+            String tokenDigest = TokenUtil.digest(jwtToken);
+            JwtClaimsContext claims = verifiedTokenCache.getIfPresent(tokenDigest);
+            if (claims == null) {
                 HttpStatus status = jwtUtil.validateJWTToken(jwtToken);
                 if (!status.equals(HttpStatus.OK)) {
                     log.error("(Filter) JWT Token is invalid");
-                    exchange.getResponse().setStatusCode(status);
-                    return exchange.getResponse().setComplete();
+                    meters.record(Stage.JWT_VALIDATION, Outcome.REJECTED, jwtStart);
+                    return reject(exchange, status);
                 }
 
-                String userId = this.jwtUtil.extractUserId(jwtToken);
-                boolean isWeb = this.jwtUtil.extractIsWeb(jwtToken);
-                List<String> roles = this.jwtUtil.extractRoles(jwtToken);
-                log.info("roles for userId: {} is {}", userId, roles);
+                claims = parseClaims(jwtToken, tokenDigest);
+                verifiedTokenCache.put(claims);
+            }
+            meters.record(Stage.JWT_VALIDATION, Outcome.SUCCESS, jwtStart);
+            exchange.getAttributes().put(JwtClaimsContext.ATTRIBUTE, claims);
 
-                if (!checkAccessRoles(uri, roles)) {
-                    exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
-                    return exchange.getResponse().setComplete();
-                }
+            String userId = claims.userId();
+            auditLogger.record(AuditCategory.AUTH, "token-verified",
+                    "token", jwtToken, "userId", userId, "roles", claims.roles());
 
-                QueryUserProfileResponse userProfile;
-                try {
-                    userProfile = rcasQueryUserProfile(userId);
-                } catch (JsonProcessingException e) {
-                    log.error("(Filter) Failed to query user profile for userId: {}", userId, e);
-                    exchange.getResponse().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
-                    return exchange.getResponse().setComplete();
-                }
+            if (!checkAccessRoles(uri, route, claims.roles())) {
+                return reject(exchange, HttpStatus.FORBIDDEN);
+            }
 
-                if (userProfile == null) {
-                    log.error("(Filter) userId is not exist: {}", userId);
-                    exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
-                    return exchange.getResponse().setComplete();
-                }
+            AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimits.tryAcquire(ConcurrencyLimits.Stage.AUTH);
+            if (permit == null) {
+                log.warn("(Filter) Auth stage at its concurrency limit, rejecting userId: {}", userId);
+                return concurrencyLimits.rejectOverloaded(exchange);
+            }
 
-                Optional<CorpUserToken> corpUserTokenOptional;
+            JwtClaimsContext verifiedClaims = claims;
+            long profileStart = System.nanoTime();
 
-                if (isWeb) {
-                    corpUserTokenOptional = this.corpUserTokenRepository.findByTokenId(jwtToken);
-                    if (corpUserTokenOptional.isEmpty()) {
-                        log.error("(Filter) the web session id is not match: {}", userId);
-                        exchange.getResponse().setStatusCode(HttpStatus.CONFLICT);
-                        return exchange.getResponse().setComplete();
-                    }
-                } else {
-                    corpUserTokenOptional = this.corpUserTokenRepository.findByMobileTokenId(jwtToken);
-                    if (corpUserTokenOptional.isEmpty()) {
-                        log.error("(Filter) the mobile session id is not match: {}", userId);
-                        exchange.getResponse().setStatusCode(HttpStatus.CONFLICT);
-                        return exchange.getResponse().setComplete();
-                    }
-                }
+            return userProfileCache.get(userId, this::rcasQueryUserProfile)
+                    .map(userProfile -> ProfileLookup.FOUND)
+                    .defaultIfEmpty(ProfileLookup.NOT_FOUND)
+                    .onErrorResume(e -> {
+                        log.error("(Filter) Failed to query user profile for userId: {}", userId, e);
+                        return Mono.just(ProfileLookup.FAILED);
+                    })
+                    .flatMap(lookup -> switch (lookup) {
+                        case FAILED -> {
+                            permit.drop();
+                            meters.record(Stage.PROFILE_LOOKUP, Outcome.ERROR, profileStart);
+                            yield reject(exchange, HttpStatus.INTERNAL_SERVER_ERROR);
+                        }
+                        case NOT_FOUND -> {
+                            permit.release();
+                            meters.record(Stage.PROFILE_LOOKUP, Outcome.REJECTED, profileStart);
+                            log.error("(Filter) userId is not exist: {}", userId);
+                            yield reject(exchange, HttpStatus.NOT_FOUND);
+                        }
+                        case FOUND -> {
+                            meters.record(Stage.PROFILE_LOOKUP, Outcome.SUCCESS, profileStart);
+                            yield validateSession(exchange, chain, jwtToken, verifiedClaims, meters, permit);
+                        }
+                    })
+                    .doFinally(signal -> permit.ignore());
+        };
+    }
+
+    private JwtClaimsContext parseClaims(String jwtToken, String tokenDigest) {
+        EnumSet<JWTokenRole> roles = EnumSet.noneOf(JWTokenRole.class);
+        for (String role : this.jwtUtil.extractRoles(jwtToken)) {
+            try {
+                roles.add(JWTokenRole.valueOf(role));
+            } catch (IllegalArgumentException e) {
+                log.debug("(Filter) Ignoring unknown role: {}", role);
             }
+        }
 
-            return chain.filter(exchange);
-        };
+        return new JwtClaimsContext(tokenDigest,
+                this.jwtUtil.extractUserId(jwtToken),
+                this.jwtUtil.extractIsWeb(jwtToken),
+                roles,
+                TokenUtil.expiresAt(jwtToken));
+    }
+
+    private Mono<Void> validateSession(ServerWebExchange exchange, GatewayFilterChain chain,
+                                       String jwtToken, JwtClaimsContext claims, RouteMeters meters,
+                                       AdaptiveConcurrencyLimiter.Permit permit) {
+        boolean isWeb = claims.web();
+        long sessionStart = System.nanoTime();
+        return sessionValidityCache.isValid(claims, () -> sessionTokenBatchLoader.exists(jwtToken, isWeb))
+                .doOnError(e -> {
+                    permit.drop();
+                    meters.record(Stage.SESSION_LOOKUP, Outcome.ERROR, sessionStart);
+                })
+                .flatMap(valid -> {
+                    // The permit covers the lookups only, not the time spent in the backend
+                    permit.release();
+                    meters.record(Stage.SESSION_LOOKUP, valid ? Outcome.SUCCESS : Outcome.REJECTED, sessionStart);
+                    if (!valid) {
+                        log.error("(Filter) the {} session id is not match: {}", isWeb ? "web" : "mobile", claims.userId());
+                        return reject(exchange, HttpStatus.CONFLICT);
+                    }
+                    return chain.filter(exchange);
+                });
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, HttpStatus status) {
+        exchange.getResponse().setStatusCode(status);
+        return exchange.getResponse().setComplete();
     }
 
     private String extractJwtTokenFromRequest(ServerWebExchange exchange) {
-        log.info("Extracting JWT Token from request headers");
         String authorizationHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
 
         if (authorizationHeader != null && authorizationHeader.startsWith(JwtUtil.BEARER)) {
@@ -130,7 +208,7 @@ public class JwtTokenHeaderValidationFilter extends AbstractGatewayFilterFactory
     }
 
     private <T, R> Mono<R> postWithWebClient(String url, T requestBody, HttpHeaders headers, Class<R> responseType) {
-        log.info("Making POST request to: {} with request body: {}", url, requestBody);
+        auditLogger.record(AuditCategory.RCAS, "request", "url", url, "requestBody", requestBody);
         return webClient.post()
                 .uri(url)
                 .headers(httpHeaders -> httpHeaders.addAll(headers))
@@ -140,9 +218,8 @@ public class JwtTokenHeaderValidationFilter extends AbstractGatewayFilterFactory
                 .doOnError(e -> log.error("Error during WebClient call: {}", e.getMessage()));
     }
 
-    @SneakyThrows
-    private QueryUserProfileResponse rcasQueryUserProfile(String userId) throws JsonProcessingException {
-        log.info("rcasQueryUserProfile is executing.....: {}", userId);
+    private Mono<QueryUserProfileResponse> rcasQueryUserProfile(String userId) {
+        log.debug("rcasQueryUserProfile is executing for userId: {}", userId);
 
         JSONObject rcasQueryProfile = new JSONObject();
         rcasQueryProfile.put("userId", userId);
@@ -150,8 +227,8 @@ public class JwtTokenHeaderValidationFilter extends AbstractGatewayFilterFactory
         HttpHeaders headers = getHeaders();
 
         return postWithWebClient(queryUserProfile, rcasQueryProfile.toString(), headers, QueryUserProfileResponse.class)
-                .doOnSuccess(res -> log.info("Response from Rcas Query User Profile::: {}", res))
-                .block();
+                .doOnSuccess(res -> auditLogger.record(AuditCategory.RCAS, "profile-response",
+                        "userId", userId, "profile", res));
     }
 
     public HttpHeaders getHeaders(){
@@ -163,27 +240,31 @@ public class JwtTokenHeaderValidationFilter extends AbstractGatewayFilterFactory
         return headersToken;
     }
 
-    public boolean checkAccessRoles(String uri, List<String> roles) {
-        log.info("uri: {}, roles: {}", uri, roles);
+    public boolean checkAccessRoles(String uri, EnumSet<JWTokenRole> roles) {
+        return checkAccessRoles(uri, routerValidator.classify(uri), roles);
+    }
 
-        if (roles.containsAll(List.of(JWTokenRole.TEMP.name(), JWTokenRole.USER.name()))) {
-            if (!routerValidator.isTemporary.test(uri)) {
+    public boolean checkAccessRoles(String uri, RouteClassification route, EnumSet<JWTokenRole> roles) {
+        log.debug("uri: {}, roles: {}", uri, roles);
+
+        if (roles.contains(JWTokenRole.TEMP) && roles.contains(JWTokenRole.USER)) {
+            if (!route.is(RouteCategory.TEMPORARY)) {
                 log.error("(Filter) Access denied: [{}] - User roles: {} - TEMP role users can only access temporary endpoints", uri, roles);
                 return false;
             }
             return true;
         }
 
-        if (roles.contains(JWTokenRole.PRE_2FA.name())) {
-            if (!routerValidator.is2FA.test(uri)) {
+        if (roles.contains(JWTokenRole.PRE_2FA)) {
+            if (!route.is(RouteCategory.PRE_2FA)) {
                 log.error("(Filter) Access denied: [{}] - User roles: {} - PRE_2FA users can only access pre-2FA endpoints", uri, roles);
                 return false;
             }
             return true;
         }
 
-        if (routerValidator.isSecured.test(uri)) {
-            if (!roles.contains(JWTokenRole.USER.name())) {
+        if (route.isSecured()) {
+            if (!roles.contains(JWTokenRole.USER)) {
                 log.error("(Filter) Access denied: [{}] - User roles: {} - USER role is required for secured endpoints", uri, roles);
                 return false;
             }
@@ -192,6 +273,10 @@ public class JwtTokenHeaderValidationFilter extends AbstractGatewayFilterFactory
         return true;
     }
 
+    private enum ProfileLookup {
+        FOUND, NOT_FOUND, FAILED
+    }
+
     public static class Config {
         // If any configuration properties needed
     }
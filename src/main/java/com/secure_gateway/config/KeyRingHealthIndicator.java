@@ -0,0 +1,42 @@
+package com.secure_gateway.config;
+
+import com.secure_gateway.helper.GatewayKey;
+import com.secure_gateway.helper.KeyProvisioner;
+import com.secure_gateway.helper.KeyRing;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * {@code keyRing} health: DOWN until {@link KeyProvisioner} has loaded gateway keys, OUT_OF_SERVICE while the loaded
+ * ring is stale. It is part of the readiness group, which {@link ReadinessHealthCheckHandler} also reports to Eureka,
+ * so the node takes no traffic before it can decrypt.
+ */
+@Component
+@AllArgsConstructor
+public class KeyRingHealthIndicator implements HealthIndicator {
+    private final KeyRing keyRing;
+    private final KeyProvisioner keyProvisioner;
+
+    @Override
+    public Health health() {
+        GatewayKey current = keyRing.current();
+        Health.Builder builder;
+        if (current == null) {
+            builder = Health.down();
+        } else {
+            builder = keyProvisioner.isStale() ? Health.outOfService().withDetail("stale", true) : Health.up();
+            builder.withDetail("currentKeyId", current.getKeyId());
+        }
+        builder.withDetail("source", keyProvisioner.getSource().name().toLowerCase(Locale.ROOT))
+                .withDetail("failedAttempts", keyProvisioner.getFailedAttempts());
+        Throwable lastError = keyProvisioner.getLastError();
+        if (lastError != null) {
+            builder.withDetail("lastError", lastError.toString());
+        }
+        return builder.build();
+    }
+}
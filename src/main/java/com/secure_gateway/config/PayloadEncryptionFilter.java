@@ -1,14 +1,32 @@
 package com.secure_gateway.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iwebpp.crypto.TweetNaclFast;
 import com.m2e.gateway.repository.SecretkeyGeneratorRepository;
 import com.m2e.utils.api.dto.ApiResponse;
+import com.secure_gateway.helper.AdaptiveConcurrencyLimiter;
+import com.secure_gateway.helper.BinaryEnvelope;
+import com.secure_gateway.helper.ConcurrencyLimits;
+import com.secure_gateway.helper.CryptoExecutionStage;
+import com.secure_gateway.helper.FramedResponseEncryptor;
+import com.secure_gateway.helper.GatewayKey;
+import com.secure_gateway.helper.GatewayMetrics;
+import com.secure_gateway.helper.GatewayMetrics.Outcome;
+import com.secure_gateway.helper.GatewayMetrics.Payload;
+import com.secure_gateway.helper.GatewayMetrics.RouteMeters;
+import com.secure_gateway.helper.GatewayMetrics.Stage;
+import com.secure_gateway.helper.KeyRing;
+import com.secure_gateway.helper.RequestBodyAggregator;
+import com.secure_gateway.helper.RequestBodyAggregator.PayloadTooLargeException;
 import com.secure_gateway.helper.RequestDecryptor;
 import com.secure_gateway.helper.ResponseEncryptor;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
@@ -18,6 +36,7 @@ import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
@@ -25,32 +44,54 @@ import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 
-import static com.m2e.gateway.constant.CryptographyConstant.*;
+import static com.m2e.gateway.constant.CryptographyConstant.USER_PUBLIC_KEY_BASE64;
 import static com.m2e.gateway.constant.ErrorEnum.EXTGW02;
 
 @Component
 @Slf4j
 public class PayloadEncryptionFilter extends AbstractGatewayFilterFactory<PayloadEncryptionFilter.Config> {
+    public static final String CLIENT_PUBLIC_KEY_HEADER = "X-Client-Public-Key";
 
     @Autowired
     private RequestDecryptor requestDecryptor;
     @Autowired
     private ResponseEncryptor responseEncryptor;
     @Autowired
+    private FramedResponseEncryptor framedResponseEncryptor;
+    @Autowired
+    private RequestBodyAggregator requestBodyAggregator;
+    @Autowired
+    private CryptoExecutionStage cryptoExecutionStage;
+    @Autowired
     private SecretkeyGeneratorRepository secretkeyGeneratorRepository;
     @Autowired
     @Qualifier("gatewayObjectMapper")
     private ObjectMapper objectMapper;
     @Autowired
-    @Qualifier("secretKeyMap")
-    private Map<String, String> secretKeyMap;
+    private KeyRing keyRing;
+    @Autowired
+    private GatewayMetrics gatewayMetrics;
+    @Autowired
+    private ConcurrencyLimits concurrencyLimits;
+    @Value("${gateway.payload.max-request-body-size:10MB}")
+    private DataSize defaultMaxBodySize;
+    @Value("${gateway.payload.spill-threshold:1MB}")
+    private DataSize defaultSpillThreshold;
 
     public PayloadEncryptionFilter(RequestDecryptor requestDecryptor,
                                    ResponseEncryptor responseEncryptor,
@@ -68,107 +109,268 @@ public class PayloadEncryptionFilter extends AbstractGatewayFilterFactory<Payloa
 
     @Override
     public GatewayFilter apply(Config config) {
+        Mode mode = config.getMode();
+        Set<HttpMethod> methods = config.getMethods().stream()
+                .map(method -> HttpMethod.valueOf(method.trim().toUpperCase(Locale.ROOT)))
+                .collect(Collectors.toSet());
+        List<MediaType> contentTypes = config.getContentTypes().stream()
+                .map(MediaType::parseMediaType)
+                .toList();
+        long maxBodySize = resolve(config.getMaxBodySize(), defaultMaxBodySize);
+        long spillThreshold = resolve(config.getSpillThreshold(), defaultSpillThreshold);
+
         return new OrderedGatewayFilter((exchange, chain) -> {
-            // Check if the request contains the public key
-            Map<String, String> secretkeyGenerator = getLatestSecretKey();
+            if (mode == Mode.NONE) {
+                return chain.filter(exchange);
+            }
 
-            log.debug("Is secret key null: {}", secretkeyGenerator == null);
-            if (secretkeyGenerator == null) {
-                log.error("Encryption keys not found!");
-                return handleError(exchange);
+            ServerHttpRequest request = exchange.getRequest();
+            // Any body on a route with encrypted requests is an envelope; forwarding one that fails the method or
+            // content-type checks would hand plaintext to the backend
+            boolean decryptRequest = mode.request && hasBody(request);
+            if (decryptRequest && !methods.contains(request.getMethod())) {
+                log.error("Request body not accepted for method {}", request.getMethod());
+                return handleError(exchange, HttpStatus.BAD_REQUEST);
+            }
+            if (decryptRequest && !matches(contentTypes, request.getHeaders().getContentType())) {
+                log.error("Request body not accepted for content type {}", request.getHeaders().getContentType());
+                return handleError(exchange, HttpStatus.UNSUPPORTED_MEDIA_TYPE);
             }
 
-            log.debug("Secret key id: {}", secretkeyGenerator.get(ID));
+            long contentLength = request.getHeaders().getContentLength();
+            if (decryptRequest && contentLength > maxBodySize) {
+                log.error("Request body of {} bytes exceeds the maximum of {} bytes", contentLength, maxBodySize);
+                return handleError(exchange, HttpStatus.PAYLOAD_TOO_LARGE);
+            }
+
+            GatewayKey currentKey = keyRing.current();
+            if (currentKey == null) {
+                // Keys are still being provisioned; readiness is DOWN meanwhile, so this is only stray traffic
+                log.warn("Encryption keys not loaded yet");
+                return concurrencyLimits.rejectOverloaded(exchange);
+            }
+
+            log.debug("Current key id: {}", currentKey.getKeyId());
 
-            exchange.getAttributes().put(SECRET_KEY, secretkeyGenerator.get(SECRET_KEY));
-            exchange.getAttributes().put(PUBLIC_KEY, secretkeyGenerator.get(PUBLIC_KEY));
-            return processRequest(exchange, chain);
+            exchange.getAttributes().put(GatewayKey.ATTRIBUTE, currentKey);
+            if (!decryptRequest) {
+                return passThrough(exchange, chain, mode.response);
+            }
+            return processRequest(exchange, chain, maxBodySize, spillThreshold, mode.response);
         }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
     }
 
-    private Mono<Void> processRequest(ServerWebExchange exchange, GatewayFilterChain chain) {
+    /**
+     * Forwards a request without a body, or any request on a route whose requests are not encrypted, without
+     * subscribing to or buffering the body. When the response is
+     * still encrypted, the client's public key comes from the {@value #CLIENT_PUBLIC_KEY_HEADER} header.
+     */
+    private Mono<Void> passThrough(ServerWebExchange exchange, GatewayFilterChain chain, boolean encryptResponse) {
+        if (!encryptResponse) {
+            return chain.filter(exchange);
+        }
+
+        ServerHttpRequest request = exchange.getRequest();
+        String clientPublicKey = request.getHeaders().getFirst(CLIENT_PUBLIC_KEY_HEADER);
+        if (!isValidPublicKey(clientPublicKey)) {
+            log.error("Missing or invalid {} header for an encrypted response", CLIENT_PUBLIC_KEY_HEADER);
+            return handleError(exchange, HttpStatus.BAD_REQUEST);
+        }
+        exchange.getAttributes().put(USER_PUBLIC_KEY_BASE64, clientPublicKey);
+
+        boolean binaryResponse = BinaryEnvelope.isAccepted(request);
+        ServerWebExchange forwarded = binaryResponse
+                ? exchange.mutate().request(builder -> builder.headers(headers ->
+                        headers.setAccept(List.of(MediaType.APPLICATION_JSON)))).build()
+                : exchange;
+
+        return chain.filter(forwarded.mutate()
+                .response(createDecoratedResponse(exchange.getResponse(), forwarded,
+                        exchange.getResponse().bufferFactory(), binaryResponse))
+                .build());
+    }
+
+    private Mono<Void> processRequest(ServerWebExchange exchange, GatewayFilterChain chain, long maxBodySize,
+                                      long spillThreshold, boolean encryptResponse) {
         ServerHttpRequest request = exchange.getRequest();
         ServerHttpResponse response = exchange.getResponse();
         DataBufferFactory bufferFactory = response.bufferFactory();
+        RouteMeters meters = gatewayMetrics.forExchange(exchange);
 
-        return DataBufferUtils.join(request.getBody())
+        return requestBodyAggregator.aggregate(request.getBody(), maxBodySize, spillThreshold, bufferFactory)
                 .flatMap(dataBuffer -> {
-                    byte[] bytes = new byte[dataBuffer.readableByteCount()];
-                    dataBuffer.read(bytes);
-                    DataBufferUtils.release(dataBuffer);
-
-                    try {
-                        byte[] newRequestBodyBytes;
-
-//                        if (bytes.length == 0) {
-//                            // just forward empty body but still wrap response for encryption
-//                            newRequestBodyBytes = new byte[0];
-//                        } else {
-                            String decryptedPayload = requestDecryptor.decryptRequest(bytes, exchange);
-                            newRequestBodyBytes = decryptedPayload.getBytes();
-//                        }
-                        ServerHttpRequest mutatedRequest = exchange.getRequest().mutate()
-                                .header(HttpHeaders.CONTENT_LENGTH, Integer.toString(newRequestBodyBytes.length))
-                                .build();
-
-                        ServerWebExchange mutatedExchange = exchange.mutate()
-                                .request(mutatedRequest)
-                                .build();
-
-                        return chain.filter(mutatedExchange.mutate()
-                                .request(createDecoratedRequest(mutatedRequest, newRequestBodyBytes, bufferFactory))
-                                .response(createDecoratedResponse(response,mutatedExchange,bufferFactory))
-                                .build());
-
-                    } catch (Exception e) {
-                        log.error("Request decryption failed", e);
-                        return handleError(exchange);
-//                        return Mono.error(new RuntimeException("Request decryption failed", e));
+                    AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimits.tryAcquire(ConcurrencyLimits.Stage.CRYPTO);
+                    if (permit == null) {
+                        DataBufferUtils.release(dataBuffer);
+                        return Mono.error(new CryptoStageOverloadedException());
                     }
+                    return cryptoExecutionStage.execute(dataBuffer, () -> {
+                                meters.recordSize(Payload.REQUEST_CIPHERTEXT, dataBuffer.readableByteCount());
+                                long decryptStart = System.nanoTime();
+                                try {
+                                    DataBuffer decrypted = requestDecryptor.decryptRequest(dataBuffer, exchange, bufferFactory);
+                                    if (decrypted == null) {
+                                        meters.record(Stage.DECRYPT, Outcome.REJECTED, decryptStart);
+                                        return null;
+                                    }
+                                    meters.record(Stage.DECRYPT, Outcome.SUCCESS, decryptStart);
+                                    meters.recordSize(Payload.REQUEST_PLAINTEXT, decrypted.readableByteCount());
+                                    return decrypted;
+                                } catch (Exception e) {
+                                    meters.record(Stage.DECRYPT, Outcome.ERROR, decryptStart);
+                                    throw e;
+                                } finally {
+                                    DataBufferUtils.release(dataBuffer);
+                                }
+                            })
+                            // Only a saturated crypto pool says anything about capacity; bad envelopes are fast samples
+                            .doOnSuccess(decrypted -> permit.release())
+                            .doOnError(e -> {
+                                if (e instanceof RejectedExecutionException) {
+                                    permit.drop();
+                                } else {
+                                    permit.release();
+                                }
+                            })
+                            .doFinally(signal -> permit.ignore())
+                            .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Request body has no cipher text")))
+                            .onErrorMap(e -> !(e instanceof RejectedExecutionException) && !(e instanceof PayloadTooLargeException),
+                                    RequestDecryptionException::new);
+                })
+                .flatMap(decryptedBody -> {
+                    boolean binaryRequest = BinaryEnvelope.isBinary(request);
+                    boolean binaryResponse = encryptResponse && BinaryEnvelope.isAccepted(request);
+                    ServerHttpRequest mutatedRequest = exchange.getRequest().mutate()
+                            .headers(headers -> {
+                                headers.setContentLength(decryptedBody.readableByteCount());
+                                if (binaryRequest) {
+                                    headers.setContentType(MediaType.APPLICATION_JSON);
+                                }
+                                if (binaryResponse) {
+                                    headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+                                }
+                            })
+                            .build();
+
+                    ServerWebExchange mutatedExchange = exchange.mutate()
+                            .request(mutatedRequest)
+                            .build();
+
+                    return chain.filter(mutatedExchange.mutate()
+                                    .request(createDecoratedRequest(mutatedRequest, decryptedBody))
+                                    .response(encryptResponse
+                                            ? createDecoratedResponse(response, mutatedExchange, bufferFactory, binaryResponse)
+                                            : response)
+                                    .build())
+                            .doFinally(signal -> DataBufferUtils.release(decryptedBody));
+                })
+                .onErrorResume(PayloadTooLargeException.class, e -> {
+                    log.error("Request body rejected: {}", e.getMessage());
+                    return handleError(exchange, HttpStatus.PAYLOAD_TOO_LARGE);
+                })
+                .onErrorResume(RejectedExecutionException.class, e ->
+                        handleError(exchange, HttpStatus.SERVICE_UNAVAILABLE))
+                .onErrorResume(CryptoStageOverloadedException.class, e -> concurrencyLimits.rejectOverloaded(exchange))
+                .onErrorResume(RequestDecryptionException.class, e -> {
+                    log.error("Request decryption failed", e.getCause());
+                    return handleError(exchange);
                 });
     }
 
-    private ServerHttpResponseDecorator createDecoratedResponse(ServerHttpResponse response, ServerWebExchange exchange, DataBufferFactory bufferFactory) {
+    private ServerHttpResponseDecorator createDecoratedResponse(ServerHttpResponse response, ServerWebExchange exchange,
+                                                                DataBufferFactory bufferFactory, boolean binaryResponse) {
         return new ServerHttpResponseDecorator(response) {
             @Override
             public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
-                if (body instanceof Flux) {
-                    Flux<? extends DataBuffer> fluxBody = (Flux<? extends DataBuffer>) body;
-                    return super.writeWith(responseEncryptor.encryptResponse(fluxBody, exchange, bufferFactory));
+                if (FramedResponseEncryptor.isRequested(exchange.getRequest())) {
+                    return super.writeWith(framedResponseEncryptor.encryptResponse(
+                            Flux.from(body), exchange, getHeaders(), bufferFactory));
+                }
+                if (binaryResponse) {
+                    return super.writeWith(responseEncryptor.encryptBinaryResponse(
+                            Flux.from(body), exchange, getHeaders(), bufferFactory));
                 }
-                return super.writeWith(body);
+                return super.writeWith(responseEncryptor.encryptResponse(
+                        Flux.from(body), exchange, getHeaders(), bufferFactory));
             }
         };
     }
 
-    private ServerHttpRequestDecorator createDecoratedRequest(ServerHttpRequest request,byte[] body, DataBufferFactory bufferFactory) {
+    /**
+     * The decrypted body stays owned by the filter, which releases it once the chain completes. Every subscription
+     * gets its own retained slice with independent read indices, released by whoever writes it (Netty), so a retry
+     * re-reads the whole body and nothing is released twice.
+     */
+    @SuppressWarnings("deprecation") // retainedSlice: split() would consume the filter's own buffer
+    private ServerHttpRequestDecorator createDecoratedRequest(ServerHttpRequest request, DataBuffer body) {
+        int readPosition = body.readPosition();
+        int length = body.readableByteCount();
         return new ServerHttpRequestDecorator(request) {
             @Override
             public Flux<DataBuffer> getBody() {
-                return Flux.defer(() -> Mono.just(bufferFactory.wrap(body)));
+                return Flux.defer(() -> Flux.just(body.retainedSlice(readPosition, length)))
+                        .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
             }
         };
     }
 
-    private Map<String, String> getLatestSecretKey() {
+    private static boolean hasBody(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        return headers.getContentLength() > 0 || headers.containsKey(HttpHeaders.TRANSFER_ENCODING);
+    }
+
+    /**
+     * Requests without a Content-Type are treated as envelopes; an empty list matches every content type.
+     */
+    private static boolean matches(List<MediaType> contentTypes, MediaType contentType) {
+        if (contentTypes.isEmpty() || contentType == null) {
+            return true;
+        }
+        for (MediaType candidate : contentTypes) {
+            if (candidate.includes(contentType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isValidPublicKey(String publicKeyBase64) {
+        if (!StringUtils.hasText(publicKeyBase64)) {
+            return false;
+        }
         try {
-            return secretKeyMap;
-        } catch (Exception e) {
-            log.error("Failed to retrieve secret key", e);
-            return null;
+            return Base64.getDecoder().decode(publicKeyBase64).length == TweetNaclFast.Box.publicKeyLength;
+        } catch (IllegalArgumentException e) {
+            return false;
         }
     }
 
-    private Mono<Void> handleError(ServerWebExchange exchange) {
-        ServerHttpResponse response = exchange.getResponse();
-        response.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
-        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+    private static long resolve(DataSize routeValue, DataSize defaultValue) {
+        return (routeValue != null ? routeValue : defaultValue).toBytes();
+    }
 
+    private Mono<Void> handleError(ServerWebExchange exchange) {
         ApiResponse apiResponse = ApiResponse.failure(
                 UUID.randomUUID().toString(),
                 EXTGW02.getCode(),
                 EXTGW02.getMessage()
         );
+        return writeError(exchange, HttpStatus.INTERNAL_SERVER_ERROR, apiResponse);
+    }
+
+    private Mono<Void> handleError(ServerWebExchange exchange, HttpStatus status) {
+        ApiResponse apiResponse = ApiResponse.failure(
+                UUID.randomUUID().toString(),
+                String.valueOf(status.value()),
+                status.getReasonPhrase()
+        );
+        return writeError(exchange, status, apiResponse);
+    }
+
+    private Mono<Void> writeError(ServerWebExchange exchange, HttpStatus status, ApiResponse apiResponse) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
 
         try {
             byte[] json = objectMapper.writeValueAsBytes(apiResponse);
@@ -180,7 +382,46 @@ public class PayloadEncryptionFilter extends AbstractGatewayFilterFactory<Payloa
         }
     }
 
+    private static class RequestDecryptionException extends RuntimeException {
+        RequestDecryptionException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private static class CryptoStageOverloadedException extends RuntimeException {
+        CryptoStageOverloadedException() {
+            super("Crypto stage at its concurrency limit", null, false, false);
+        }
+    }
+
+    /**
+     * Which directions of a route are encrypted.
+     */
+    public enum Mode {
+        BOTH(true, true), REQUEST(true, false), RESPONSE(false, true), NONE(false, false);
+
+        private final boolean request;
+        private final boolean response;
+
+        Mode(boolean request, boolean response) {
+            this.request = request;
+            this.response = response;
+        }
+    }
+
+    @Getter
+    @Setter
     public static class Config {
-        //other config
+        /** Encrypted directions for this route. */
+        private Mode mode = Mode.BOTH;
+        /** Methods that may carry an encrypted request body; bodies on other methods are rejected with 400. */
+        private List<String> methods = new ArrayList<>(List.of("POST", "PUT", "PATCH", "DELETE"));
+        /** Content types an encrypted request body may have, others are rejected with 415; empty matches any. */
+        private List<String> contentTypes = new ArrayList<>(List.of(MediaType.APPLICATION_JSON_VALUE,
+                BinaryEnvelope.MEDIA_TYPE_VALUE));
+        /** Maximum encrypted request body for this route; falls back to {@code gateway.payload.max-request-body-size}. */
+        private DataSize maxBodySize;
+        /** Bodies above this size are spilled to a temporary file; falls back to {@code gateway.payload.spill-threshold}. */
+        private DataSize spillThreshold;
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.secure_gateway.config;
+
+import com.netflix.appinfo.HealthCheckHandler;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.HealthComponent;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the readiness group, rather than the overall health, as the Eureka instance status. Overall health includes
+ * indicators such as {@code db} that go DOWN while the database is unreachable, which would deregister a node that is
+ * still serving from its sealed key ring. Without a health endpoint (e.g. the management server disabled) the status is
+ * UNKNOWN.
+ */
+@Component
+@AllArgsConstructor
+public class ReadinessHealthCheckHandler implements HealthCheckHandler {
+    private static final String READINESS_GROUP = "readiness";
+
+    private final ObjectProvider<HealthEndpoint> healthEndpoint;
+
+    @Override
+    public InstanceStatus getStatus(InstanceStatus currentStatus) {
+        HealthEndpoint endpoint = healthEndpoint.getIfAvailable();
+        HealthComponent readiness = endpoint != null ? endpoint.healthForPath(READINESS_GROUP) : null;
+        if (readiness == null) {
+            return InstanceStatus.UNKNOWN;
+        }
+        Status status = readiness.getStatus();
+        if (Status.UP.equals(status)) {
+            return InstanceStatus.UP;
+        }
+        if (Status.OUT_OF_SERVICE.equals(status)) {
+            return InstanceStatus.OUT_OF_SERVICE;
+        }
+        if (Status.DOWN.equals(status)) {
+            return InstanceStatus.DOWN;
+        }
+        return InstanceStatus.UNKNOWN;
+    }
+}
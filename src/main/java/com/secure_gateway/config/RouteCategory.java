@@ -0,0 +1,33 @@
+package com.secure_gateway.config;
+
+/**
+ * Route policy tables consulted by {@link RouterValidator}, with how each table's entries are matched against the
+ * request path.
+ */
+public enum RouteCategory {
+    OPEN(MatchMode.CONTAINS),
+    DOWNTIME_WHITELIST(MatchMode.CONTAINS),
+    TEMPORARY(MatchMode.CONTAINS),
+    PRE_2FA(MatchMode.SUFFIX);
+
+    private final MatchMode matchMode;
+
+    RouteCategory(MatchMode matchMode) {
+        this.matchMode = matchMode;
+    }
+
+    public MatchMode matchMode() {
+        return matchMode;
+    }
+
+    int bit() {
+        return 1 << ordinal();
+    }
+
+    public enum MatchMode {
+        /** The path contains the entry anywhere. */
+        CONTAINS,
+        /** The path ends with the entry. */
+        SUFFIX
+    }
+}
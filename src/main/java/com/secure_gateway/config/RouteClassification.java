@@ -0,0 +1,43 @@
+package com.secure_gateway.config;
+
+/**
+ * The set of {@link RouteCategory route categories} a path belongs to. Instances are shared, one per combination.
+ */
+public final class RouteClassification {
+    private static final RouteClassification[] INSTANCES = new RouteClassification[1 << RouteCategory.values().length];
+
+    static {
+        for (int mask = 0; mask < INSTANCES.length; mask++) {
+            INSTANCES[mask] = new RouteClassification(mask);
+        }
+    }
+
+    private final int mask;
+
+    private RouteClassification(int mask) {
+        this.mask = mask;
+    }
+
+    static RouteClassification of(int mask) {
+        return INSTANCES[mask];
+    }
+
+    public boolean is(RouteCategory category) {
+        return (mask & category.bit()) != 0;
+    }
+
+    public boolean isSecured() {
+        return !is(RouteCategory.OPEN);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RouteClassification[");
+        for (RouteCategory category : RouteCategory.values()) {
+            if (is(category)) {
+                builder.append(builder.charAt(builder.length() - 1) == '[' ? "" : ", ").append(category);
+            }
+        }
+        return builder.append(']').toString();
+    }
+}
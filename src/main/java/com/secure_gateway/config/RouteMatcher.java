@@ -0,0 +1,105 @@
+package com.secure_gateway.config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton over every route policy entry, classifying a path into all {@link RouteCategory categories}
+ * in a single pass.
+ * <p>
+ * {@link RouteCategory.MatchMode#CONTAINS CONTAINS} entries match when any state reached along the path outputs
+ * them; {@link RouteCategory.MatchMode#SUFFIX SUFFIX} entries only when the state after the last character does.
+ * The goto function is expanded into a full transition table over ASCII, so matching is one array lookup per
+ * character. Entries are ASCII; any other character can never be part of a match and resets to the root.
+ */
+public final class RouteMatcher {
+    private static final int ALPHABET = 128;
+    private static final int ROOT = 0;
+
+    private final int[][] transitions;
+    private final int[] containsOutput;
+    private final int[] suffixOutput;
+
+    public RouteMatcher(Map<RouteCategory, ? extends List<String>> entries) {
+        List<int[]> gotoTable = new ArrayList<>();
+        List<int[]> outputs = new ArrayList<>();
+        gotoTable.add(newState());
+        outputs.add(new int[2]);
+
+        entries.forEach((category, patterns) -> {
+            for (String pattern : patterns) {
+                int state = ROOT;
+                for (int i = 0; i < pattern.length(); i++) {
+                    char c = pattern.charAt(i);
+                    if (c >= ALPHABET) {
+                        throw new IllegalArgumentException("Route entry must be ASCII: " + pattern);
+                    }
+                    if (gotoTable.get(state)[c] < 0) {
+                        gotoTable.get(state)[c] = gotoTable.size();
+                        gotoTable.add(newState());
+                        outputs.add(new int[2]);
+                    }
+                    state = gotoTable.get(state)[c];
+                }
+                outputs.get(state)[category.matchMode().ordinal()] |= category.bit();
+            }
+        });
+
+        int size = gotoTable.size();
+        this.transitions = gotoTable.toArray(new int[0][]);
+        this.containsOutput = new int[size];
+        this.suffixOutput = new int[size];
+        for (int state = 0; state < size; state++) {
+            containsOutput[state] = outputs.get(state)[RouteCategory.MatchMode.CONTAINS.ordinal()];
+            suffixOutput[state] = outputs.get(state)[RouteCategory.MatchMode.SUFFIX.ordinal()];
+        }
+
+        int[] failure = new int[size];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = transitions[ROOT][c];
+            if (next < 0) {
+                transitions[ROOT][c] = ROOT;
+            } else {
+                failure[next] = ROOT;
+                queue.add(next);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            containsOutput[state] |= containsOutput[failure[state]];
+            suffixOutput[state] |= suffixOutput[failure[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = transitions[state][c];
+                if (next < 0) {
+                    transitions[state][c] = transitions[failure[state]][c];
+                } else {
+                    failure[next] = transitions[failure[state]][c];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    public RouteClassification classify(String path) {
+        int state = ROOT;
+        int mask = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            state = c < ALPHABET ? transitions[state][c] : ROOT;
+            mask |= containsOutput[state];
+        }
+        return RouteClassification.of(mask | suffixOutput[state]);
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+}
@@ -0,0 +1,35 @@
+package com.secure_gateway.config;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code GET /actuator/routepolicy} shows the active route policy snapshot; {@code POST /actuator/routepolicy}
+ * reloads it. The endpoint is read-only unless {@code management.endpoint.routepolicy.access} is set to
+ * {@code unrestricted}, and is only served on the management port.
+ */
+@Component
+@Endpoint(id = "routepolicy")
+@AllArgsConstructor
+public class RoutePolicyEndpoint {
+    private final RouterValidator routerValidator;
+
+    @ReadOperation
+    public Map<String, Object> snapshot() {
+        return describe(routerValidator.getSnapshot());
+    }
+
+    @WriteOperation
+    public Map<String, Object> reload() {
+        return describe(routerValidator.reload());
+    }
+
+    private Map<String, Object> describe(RoutePolicySnapshot snapshot) {
+        return Map.of("id", snapshot.getId(), "policy", snapshot.getProperties());
+    }
+}
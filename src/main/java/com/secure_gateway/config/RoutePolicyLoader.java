@@ -0,0 +1,61 @@
+package com.secure_gateway.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Reads the route policy tables, either from the file at {@code gateway.route-policy.location} (YAML or properties)
+ * or, when no location is set, from the application environment.
+ */
+@Component
+@Slf4j
+public class RoutePolicyLoader {
+    private final Environment environment;
+    private final String location;
+
+    public RoutePolicyLoader(Environment environment,
+                             @Value("${gateway.route-policy.location:}") String location) {
+        this.environment = environment;
+        this.location = location;
+    }
+
+    public RoutePolicyProperties load() {
+        if (!StringUtils.hasText(location)) {
+            return Binder.get(environment).bindOrCreate(RoutePolicyProperties.PREFIX, RoutePolicyProperties.class);
+        }
+        return load(new FileSystemResource(location));
+    }
+
+    public Path getLocation() {
+        return StringUtils.hasText(location) ? Path.of(location).toAbsolutePath() : null;
+    }
+
+    public static RoutePolicyProperties load(Resource resource) {
+        PropertySourceLoader loader = resource.getFilename() != null && resource.getFilename().endsWith(".properties")
+                ? new PropertiesPropertySourceLoader()
+                : new YamlPropertySourceLoader();
+        try {
+            List<PropertySource<?>> sources = loader.load(resource.getDescription(), resource);
+            return new Binder(ConfigurationPropertySources.from(sources))
+                    .bindOrCreate(RoutePolicyProperties.PREFIX, RoutePolicyProperties.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read route policy from " + resource.getDescription(), e);
+        }
+    }
+}
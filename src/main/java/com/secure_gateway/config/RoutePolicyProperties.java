@@ -0,0 +1,23 @@
+package com.secure_gateway.config;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Route policy tables bound from {@code gateway.route-policy.*}.
+ */
+@Data
+public class RoutePolicyProperties {
+    public static final String PREFIX = "gateway.route-policy";
+
+    /** Paths containing any of these entries skip JWT validation. */
+    private List<String> openEndpoints = new ArrayList<>();
+    /** Paths containing any of these entries stay available during downtime. */
+    private List<String> downtimeWhitelistEndpoints = new ArrayList<>();
+    /** Paths containing any of these entries are reachable with a TEMP token. */
+    private List<String> temporaryEndpoints = new ArrayList<>();
+    /** Paths ending with any of these entries are reachable before 2FA completes. */
+    private List<String> pre2faEndpoints = new ArrayList<>();
+}
@@ -0,0 +1,40 @@
+package com.secure_gateway.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Map;
+
+/**
+ * Immutable, compiled view of one version of the route policy tables, together with its own per-path cache so a
+ * reload never serves classifications from the previous version.
+ */
+public final class RoutePolicySnapshot {
+    private final String id;
+    private final RoutePolicyProperties properties;
+    private final RouteMatcher routeMatcher;
+    private final Cache<String, RouteClassification> classifications;
+
+    RoutePolicySnapshot(long version, RoutePolicyProperties properties, long cacheSize) {
+        this.id = "v" + version + "-" + Integer.toHexString(properties.hashCode());
+        this.properties = properties;
+        this.routeMatcher = new RouteMatcher(Map.of(
+                RouteCategory.OPEN, properties.getOpenEndpoints(),
+                RouteCategory.DOWNTIME_WHITELIST, properties.getDowntimeWhitelistEndpoints(),
+                RouteCategory.TEMPORARY, properties.getTemporaryEndpoints(),
+                RouteCategory.PRE_2FA, properties.getPre2faEndpoints()));
+        this.classifications = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public RoutePolicyProperties getProperties() {
+        return properties;
+    }
+
+    RouteClassification classify(String path) {
+        return classifications.get(path, routeMatcher::classify);
+    }
+}
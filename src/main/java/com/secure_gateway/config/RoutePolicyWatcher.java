@@ -0,0 +1,128 @@
+package com.secure_gateway.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads the route policy when the file at {@code gateway.route-policy.location} changes, or when a refreshed
+ * environment touches {@code gateway.route-policy.*}.
+ * <p>
+ * File events are debounced: the reload waits until the file has been quiet for {@code gateway.route-policy.debounce},
+ * so an editor or copy still writing the file is not read half-way.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "gateway.route-policy.watch", havingValue = "true", matchIfMissing = true)
+public class RoutePolicyWatcher implements SmartLifecycle {
+    private final RouterValidator routerValidator;
+    private final RoutePolicyLoader routePolicyLoader;
+    private final Duration debounce;
+    private volatile WatchService watchService;
+
+    public RoutePolicyWatcher(RouterValidator routerValidator, RoutePolicyLoader routePolicyLoader,
+                              @Value("${gateway.route-policy.debounce:PT0.5S}") Duration debounce) {
+        this.routerValidator = routerValidator;
+        this.routePolicyLoader = routePolicyLoader;
+        this.debounce = debounce;
+    }
+
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        if (routePolicyLoader.getLocation() == null
+                && event.getKeys().stream().anyMatch(key -> key.startsWith(RoutePolicyProperties.PREFIX))) {
+            reload();
+        }
+    }
+
+    @Override
+    public void start() {
+        Path location = routePolicyLoader.getLocation();
+        if (location == null) {
+            return;
+        }
+
+        try {
+            watchService = location.getFileSystem().newWatchService();
+            location.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            log.error("Unable to watch route policy file {}", location, e);
+            return;
+        }
+
+        Thread thread = new Thread(() -> watch(location), "route-policy-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Watching route policy file {}", location);
+    }
+
+    @Override
+    public void stop() {
+        WatchService service = watchService;
+        watchService = null;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                log.warn("Failed to close route policy watcher", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return watchService != null;
+    }
+
+    private void watch(Path location) {
+        try {
+            while (watchService != null) {
+                if (!changed(location, watchService.take())) {
+                    continue;
+                }
+                // Wait out further writes to the file before reading it
+                WatchKey key;
+                while ((key = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    changed(location, key);
+                }
+                reload();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Route policy watcher closed");
+        }
+    }
+
+    private static boolean changed(Path location, WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            changed |= location.getFileName().equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        try {
+            routerValidator.reload();
+        } catch (RuntimeException e) {
+            // already logged by RouterValidator; the previous snapshot stays active
+        }
+    }
+}
@@ -1,54 +1,93 @@
 package com.secure_gateway.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 
+/**
+ * Classifies request paths against the route policy tables. The tables are compiled into an immutable
+ * {@link RoutePolicySnapshot} that {@link #reload()} swaps atomically, so the request path never takes a lock.
+ * <p>
+ * Tables are validated before they are compiled: no open endpoints (a typo in the key, an emptied or half-written
+ * file) would lock every client out of login, and a blank entry would match every path.
+ */
 @Component
+@Slf4j
 public class RouterValidator {
 
-	public static final List<String> openApiEndpoints = List.of("/auth/v1/login", "/auth/v1/forgotpassword",
-			"/auth/v1/refresh-token", "/auth/v1/generate-mobile-token",
-			"common/v1/preAnnouncement", "common/v1/getApplyUrl",
-			"common/v1/publickey", "common/v1/getSecretKeyRSA", "common/v1/fpx/getFpxId", "common/v1/eproc/getEprocId",
-			"common/v1/consent/getConsentId", "common/v1/rtp/getRtpId", "/rcas/", "/v3/api-docs/", "/utility/",
-			"/dropdown/", "/v3/", "/swagger-ui/", "/error/", "/actuator/", "/rsa/",
-			"common/v1/secret-questions/retrieve", "common/v1/secret-questions/retrieveAll",
-			"common/v1/secret-questions/validate", "common/v1/secret-questions/initialize",
-			"common/v1/int/secret-questions/setup", "common/v1/int/secret-questions/retrieve",
-			"common/v1/int/secret-questions/retrieveAll", "common/v1/int/secret-questions/validate",
-			"common/v1/int/secret-questions/getAll", "common/v1/int/secret-questions/initialize", "portal/v1/sso-user",
-			"/common/v1/publickey");
-	public static final List<String> downtimeWhitelistEndpoints = List.of("common/v1/preAnnouncement",
-			"common/v1/getApplyUrl", "common/v1/publickey", "common/v1/getSecretKeyRSA", "common/v1/fpx/getFpxId",
-			"common/v1/eproc/getEprocId", "common/v1/consent/getConsentId", "common/v1/rtp/getRtpId",
-			"/auth/v1/refresh-token", "/auth/v1/generate-mobile-token", "/v3/api-docs/", "/v3/", "/swagger-ui/",
-			"common/v1/int/secret-questions/setup", "common/v1/int/secret-questions/retrieve",
-			"common/v1/int/secret-questions/retrieveAll", "common/v1/int/secret-questions/validate",
-			"common/v1/int/secret-questions/getAll", "common/v1/int/secret-questions/initialize",
-			"prelogin/announcements", "prelogin/recommended");
-    private static final List<String> tempEndpoints = List.of("/auth/v1/loginWithQuestion");
-		private static final List<String> pre2faEndpoints = List.of("/v1/secret-questions/retrieve",
-				"/v1/change-password", "/v1/generatePush", "/common/v1/secret-questions/validate",
-				"/v1/pushStatus", "/v1/validateSecure2uCode", "/v1/valHardtokenSerialNo", "/v1/valHardtokenOtp", "/v1/session-timeout/log",
-				"/v1/registration-incomplete/log", "/v1/refresh-token", "/v1/rsa-analyze");
+    private final RoutePolicyLoader routePolicyLoader;
+    private final long cacheSize;
+    private final AtomicLong versions = new AtomicLong();
+    private volatile RoutePolicySnapshot snapshot;
+
+    public RouterValidator(RoutePolicyLoader routePolicyLoader,
+                           @Value("${gateway.route-policy.cache-size:10000}") long cacheSize) {
+        this.routePolicyLoader = routePolicyLoader;
+        this.cacheSize = cacheSize;
+        this.snapshot = compile(routePolicyLoader.load());
+    }
+
+    /**
+     * Classifies the path into every route category in one pass; results are cached per exact path.
+     */
+    public RouteClassification classify(String path) {
+        return snapshot.classify(path);
+    }
+
+    public RoutePolicySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Reloads and recompiles the tables. On failure the current snapshot stays active and the error is rethrown.
+     */
+    public synchronized RoutePolicySnapshot reload() {
+        RoutePolicySnapshot previous = snapshot;
+        try {
+            snapshot = compile(routePolicyLoader.load());
+            log.info("Route policy snapshot {} replaced {}", snapshot.getId(), previous.getId());
+            return snapshot;
+        } catch (RuntimeException e) {
+            log.error("Route policy reload failed, keeping snapshot {}", previous.getId(), e);
+            throw e;
+        }
+    }
+
+    private RoutePolicySnapshot compile(RoutePolicyProperties properties) {
+        validate(properties);
+        RoutePolicySnapshot compiled = new RoutePolicySnapshot(versions.incrementAndGet(), properties, cacheSize);
+        log.info("Route policy snapshot {} compiled: {} open, {} downtime whitelist, {} temporary, {} pre-2FA entries",
+                compiled.getId(), properties.getOpenEndpoints().size(), properties.getDowntimeWhitelistEndpoints().size(),
+                properties.getTemporaryEndpoints().size(), properties.getPre2faEndpoints().size());
+        return compiled;
+    }
+
+    static void validate(RoutePolicyProperties properties) {
+        if (properties.getOpenEndpoints().isEmpty()) {
+            throw new IllegalStateException("Route policy has no open endpoints");
+        }
+        for (List<String> entries : List.of(properties.getOpenEndpoints(), properties.getDowntimeWhitelistEndpoints(),
+                properties.getTemporaryEndpoints(), properties.getPre2faEndpoints())) {
+            if (entries.stream().anyMatch(entry -> !StringUtils.hasText(entry))) {
+                throw new IllegalStateException("Route policy has a blank entry, which would match every path");
+            }
+        }
+    }
 
     public Predicate<String> isSecured =
-            request -> openApiEndpoints
-                    .stream()
-                    .noneMatch(uri -> request.contains(uri));
+            request -> classify(request).isSecured();
 
     public Predicate<String> isBypassDowntime =
-            request -> downtimeWhitelistEndpoints
-                    .stream()
-                    .noneMatch(uri -> request.contains(uri));
+            request -> !classify(request).is(RouteCategory.DOWNTIME_WHITELIST);
 
     public Predicate<String> isTemporary =
-            request -> tempEndpoints
-                    .stream()
-                    .anyMatch(uri -> request.contains(uri));
+            request -> classify(request).is(RouteCategory.TEMPORARY);
 
 	public Predicate<String> is2FA =
-			request -> pre2faEndpoints.stream().anyMatch(request::endsWith);
-}
\ No newline at end of file
+			request -> classify(request).is(RouteCategory.PRE_2FA);
+}
@@ -0,0 +1,36 @@
+package com.secure_gateway.config;
+
+import com.secure_gateway.helper.SessionValidityCache;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidation entry point for logout and forced logout: {@code DELETE /actuator/sessioncache/{tokenDigest}} drops
+ * one session, {@code DELETE /actuator/sessioncache} drops all. Peers relaying an invalidation pass
+ * {@code propagate=false} so it is not broadcast again. Like every actuator endpoint it is served on
+ * {@code management.server.port} only, never on the public gateway port.
+ */
+@Component
+@Endpoint(id = "sessioncache")
+@Slf4j
+@AllArgsConstructor
+public class SessionCacheEndpoint {
+    private final SessionValidityCache sessionValidityCache;
+
+    @DeleteOperation
+    public void invalidate(@Selector String tokenDigest, @Nullable Boolean propagate) {
+        log.info("Session cache invalidation requested for: {}", tokenDigest);
+        sessionValidityCache.invalidateDigest(tokenDigest, propagate == null || propagate);
+    }
+
+    @DeleteOperation
+    public void invalidateAll(@Nullable Boolean propagate) {
+        log.info("Session cache invalidation requested for all sessions");
+        sessionValidityCache.invalidateAll(propagate == null || propagate);
+    }
+}
@@ -0,0 +1,72 @@
+package com.secure_gateway.config;
+
+import com.secure_gateway.event.SessionInvalidatedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+
+/**
+ * Relays session invalidations to the other gateway nodes registered in discovery, through their
+ * {@link SessionCacheEndpoint}. Delivery is best effort; peers still drop the entry once its TTL expires.
+ * <p>
+ * The endpoint lives on the peer's management port, which Eureka publishes as the {@value #MANAGEMENT_PORT_METADATA}
+ * metadata entry; instances without it are addressed on their service port.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "gateway.session-cache.broadcast.enabled", havingValue = "true")
+public class SessionInvalidationBroadcaster {
+    private static final String MANAGEMENT_PORT_METADATA = "management.port";
+
+    @Value("${spring.application.name}")
+    private String serviceId;
+
+    @Value("${gateway.session-cache.broadcast.path:/actuator/sessioncache}")
+    private String endpointPath;
+
+    private final DiscoveryClient discoveryClient;
+    private final WebClient webClient;
+
+    public SessionInvalidationBroadcaster(DiscoveryClient discoveryClient, WebClient webClient) {
+        this.discoveryClient = discoveryClient;
+        this.webClient = webClient;
+    }
+
+    @EventListener
+    public void onSessionInvalidated(SessionInvalidatedEvent event) {
+        if (!event.propagate()) {
+            return;
+        }
+
+        Flux.fromIterable(discoveryClient.getInstances(serviceId))
+                .flatMap(instance -> webClient.delete()
+                        .uri(peerUri(instance, event))
+                        .retrieve()
+                        .toBodilessEntity()
+                        .doOnError(e -> log.warn("Failed to relay session invalidation to {}: {}",
+                                instance.getUri(), e.getMessage()))
+                        .onErrorComplete())
+                .subscribe();
+    }
+
+    private URI peerUri(ServiceInstance instance, SessionInvalidatedEvent event) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUri(instance.getUri()).path(endpointPath);
+        String managementPort = instance.getMetadata().get(MANAGEMENT_PORT_METADATA);
+        if (managementPort != null) {
+            builder.port(managementPort);
+        }
+        if (!event.isAll()) {
+            builder.pathSegment(event.tokenDigest());
+        }
+        return builder.queryParam("propagate", false).build().toUri();
+    }
+}
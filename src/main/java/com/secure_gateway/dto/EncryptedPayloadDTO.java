@@ -1,5 +1,6 @@
 package com.secure_gateway.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,4 +14,8 @@ public class EncryptedPayloadDTO {
     private String cipherText;
     private String publicKey;
     private String nonce;
+    private String keyId;
+    /** Codec the plaintext was compressed with before boxing, absent when uncompressed. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String compression;
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.secure_gateway.dto;
+
+import com.m2e.gateway.consts.JWTokenRole;
+
+import java.time.Instant;
+import java.util.EnumSet;
+
+/**
+ * Claims of a verified JWT, parsed once per token and shared with downstream filters through the
+ * {@link #ATTRIBUTE} exchange attribute. {@code roles} must not be modified.
+ */
+public record JwtClaimsContext(String tokenDigest, String userId, boolean web, EnumSet<JWTokenRole> roles,
+                               Instant expiresAt) {
+
+    public static final String ATTRIBUTE = JwtClaimsContext.class.getName();
+
+    public boolean hasRole(JWTokenRole role) {
+        return roles.contains(role);
+    }
+}
@@ -0,0 +1,14 @@
+package com.secure_gateway.event;
+
+/**
+ * Published when a session must no longer be served from the session validity cache.
+ *
+ * @param tokenDigest SHA-256 hex digest of the JWT, or {@code null} to invalidate every session
+ * @param propagate   whether the invalidation should be relayed to the other gateway nodes
+ */
+public record SessionInvalidatedEvent(String tokenDigest, boolean propagate) {
+
+    public boolean isAll() {
+        return tokenDigest == null;
+    }
+}
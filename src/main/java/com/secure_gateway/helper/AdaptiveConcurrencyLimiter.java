@@ -0,0 +1,175 @@
+package com.secure_gateway.helper;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit derived from observed latency, in the style of the gradient limiters.
+ * <p>
+ * Every request holds a {@link Permit} while it is in the limited stage; no permit is handed out once
+ * {@link #getInFlight()} reaches {@link #getLimit()}. Latency samples are summed per window, and the first thread to
+ * release after a window ends recomputes the limit:
+ * <ul>
+ *     <li>a window with a dropped permit (the stage failed) cuts the limit by {@code backoffRatio}</li>
+ *     <li>otherwise the window's mean latency is compared to a slow moving average; the ratio
+ *     {@code tolerance * longRtt / shortRtt}, clamped to [0.5, 1], scales the limit down as latency rises, and a
+ *     {@code sqrt(limit)} allowance lets it grow while latency holds</li>
+ * </ul>
+ * The limit does not grow during windows where less than half of it was used, so an idle stage does not drift up
+ * to the maximum and then admit a burst into a slow dependency.
+ */
+public final class AdaptiveConcurrencyLimiter {
+    private static final double LONG_RTT_WEIGHT = 0.01;
+    private static final double SMOOTHING = 0.2;
+    private static final int MIN_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder rttSumNanos = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final AtomicBoolean dropped = new AtomicBoolean();
+    private final AtomicLong windowEnd;
+
+    private volatile int limit;
+    /** Written only by the thread that won the window; read by it alone. */
+    private double estimatedLimit;
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance,
+                                      double backoffRatio, long windowNanos) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Concurrency limits need 1 <= min-limit <= max-limit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.windowNanos = windowNanos;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.estimatedLimit = limit;
+        this.windowEnd = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    /**
+     * A permit for one request, or {@code null} when the stage is at its limit.
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                peakInFlight.accumulateAndGet(current + 1, Math::max);
+                return new Permit(System.nanoTime());
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void release(long startNanos, boolean sample, boolean drop) {
+        inFlight.decrementAndGet();
+        long now = System.nanoTime();
+        if (sample) {
+            rttSumNanos.add(now - startNanos);
+            samples.increment();
+        }
+        if (drop) {
+            dropped.set(true);
+        }
+
+        long end = windowEnd.get();
+        if (now - end >= 0 && windowEnd.compareAndSet(end, now + windowNanos)) {
+            synchronized (this) {
+                updateLimit();
+            }
+        }
+    }
+
+    private void updateLimit() {
+        int peak = peakInFlight.getAndSet(inFlight.get());
+        double next;
+        if (dropped.getAndSet(false)) {
+            rttSumNanos.reset();
+            samples.reset();
+            next = estimatedLimit * backoffRatio;
+        } else {
+            long count = samples.sum();
+            if (count < MIN_SAMPLES) {
+                return;
+            }
+            long sum = rttSumNanos.sumThenReset();
+            samples.reset();
+
+            double shortRtt = (double) sum / count;
+            if (longRttNanos == 0) {
+                longRttNanos = shortRtt;
+            } else {
+                longRttNanos = longRttNanos * (1 - LONG_RTT_WEIGHT) + shortRtt * LONG_RTT_WEIGHT;
+            }
+            // After a sustained slowdown the average lags behind recovery; pull it towards the current latency
+            if (longRttNanos > 2 * shortRtt) {
+                longRttNanos *= 0.95;
+            }
+
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRtt));
+            double candidate = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            if (peak < estimatedLimit / 2) {
+                candidate = Math.min(candidate, estimatedLimit);
+            }
+            next = estimatedLimit * (1 - SMOOTHING) + candidate * SMOOTHING;
+        }
+
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, next));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Held while a request is in the limited stage. Releasing is idempotent, so a permit can be released when the
+     * stage completes and again from a final {@code doFinally} without double counting.
+     */
+    public final class Permit {
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /** The stage completed; its latency counts as a sample. */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimiter.this.release(startNanos, true, false);
+            }
+        }
+
+        /** The stage failed or timed out; the limit backs off. */
+        public void drop() {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimiter.this.release(startNanos, false, true);
+            }
+        }
+
+        /** The request left the stage without a meaningful outcome, e.g. the client cancelled. */
+        public void ignore() {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimiter.this.release(startNanos, false, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.secure_gateway.helper;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compact binary alternative to the JSON {@code EncryptedPayloadDTO} envelope, negotiated with the
+ * {@value #MEDIA_TYPE_VALUE} media type: a request with that Content-Type carries a binary envelope, and a request
+ * that lists it in Accept gets its response as one. Layout:
+ * <pre>
+ * version       1 byte   ({@value #VERSION})
+ * flags         1 byte   (bits 0-1: {@link PayloadCodec#id()} of a compressed plaintext, 0 = uncompressed;
+ *                         other bits reserved, 0)
+ * keyIdLength   1 byte   (0 = current gateway key)
+ * keyId         keyIdLength bytes, UTF-8
+ * nonce         24 bytes
+ * publicKey     32 bytes (sender's public key)
+ * cipherText    remaining bytes, NaCl box output
+ * </pre>
+ */
+public final class BinaryEnvelope {
+    public static final String MEDIA_TYPE_VALUE = "application/x-nacl-box";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+    public static final byte VERSION = 1;
+    public static final int CODEC_MASK = 0x03;
+
+    private static final int FIXED_HEADER = 3;
+    private static final int MAX_KEY_ID_LENGTH = 255;
+
+    private BinaryEnvelope() {
+    }
+
+    public static boolean isBinary(ServerHttpRequest request) {
+        MediaType contentType = request.getHeaders().getContentType();
+        return contentType != null && MEDIA_TYPE.equalsTypeAndSubtype(contentType);
+    }
+
+    /**
+     * True when the client listed {@value #MEDIA_TYPE_VALUE} in Accept.
+     */
+    public static boolean isAccepted(ServerHttpRequest request) {
+        List<MediaType> accept = request.getHeaders().getAccept();
+        for (MediaType mediaType : accept) {
+            if (MEDIA_TYPE.equalsTypeAndSubtype(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the envelope header and leaves {@code dataBuffer} positioned at the cipher text.
+     */
+    public static Header readHeader(DataBuffer dataBuffer) {
+        if (dataBuffer.readableByteCount() < FIXED_HEADER) {
+            throw new IllegalArgumentException("Invalid binary envelope: truncated header");
+        }
+
+        byte version = dataBuffer.read();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Invalid binary envelope: unsupported version " + version);
+        }
+        int flags = dataBuffer.read() & 0xFF;
+        if ((flags & ~CODEC_MASK) != 0) {
+            throw new IllegalArgumentException("Invalid binary envelope: unsupported flags " + flags);
+        }
+
+        int keyIdLength = dataBuffer.read() & 0xFF;
+        int remainingHeader = keyIdLength + TweetNaclFast.Box.nonceLength + TweetNaclFast.Box.publicKeyLength;
+        if (dataBuffer.readableByteCount() < remainingHeader + TweetNaclFast.Box.overheadLength) {
+            throw new IllegalArgumentException("Invalid binary envelope: truncated header");
+        }
+
+        String keyId = null;
+        if (keyIdLength > 0) {
+            byte[] keyIdBytes = new byte[keyIdLength];
+            dataBuffer.read(keyIdBytes);
+            keyId = new String(keyIdBytes, StandardCharsets.UTF_8);
+        }
+        byte[] nonce = new byte[TweetNaclFast.Box.nonceLength];
+        dataBuffer.read(nonce);
+        byte[] publicKey = new byte[TweetNaclFast.Box.publicKeyLength];
+        dataBuffer.read(publicKey);
+
+        return new Header(keyId, flags & CODEC_MASK, nonce, publicKey);
+    }
+
+    /**
+     * Writes a complete envelope into one buffer of exactly the envelope's size.
+     */
+    public static DataBuffer write(DataBufferFactory bufferFactory, String keyId, int codecId, byte[] nonce,
+                                   byte[] publicKey, byte[] cipherText) {
+        byte[] keyIdBytes = keyId != null ? keyId.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (keyIdBytes.length > MAX_KEY_ID_LENGTH) {
+            throw new IllegalArgumentException("Key id too long for a binary envelope: " + keyId);
+        }
+
+        DataBuffer envelope = bufferFactory.allocateBuffer(
+                FIXED_HEADER + keyIdBytes.length + nonce.length + publicKey.length + cipherText.length);
+        envelope.write(VERSION, (byte) (codecId & CODEC_MASK), (byte) keyIdBytes.length);
+        envelope.write(keyIdBytes);
+        envelope.write(nonce);
+        envelope.write(publicKey);
+        envelope.write(cipherText);
+        return envelope;
+    }
+
+    /**
+     * Parsed header; {@code codecId} is 0 for an uncompressed plaintext.
+     */
+    public record Header(String keyId, int codecId, byte[] nonce, byte[] publicKey) {
+    }
+}
@@ -0,0 +1,109 @@
+package com.secure_gateway.helper;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs blocking repository (JDBC) calls off the Netty event loops.
+ * <p>
+ * On Java 21+ with {@code gateway.repository.executor.virtual-threads} enabled every call gets its own virtual
+ * thread; otherwise calls run on a bounded elastic scheduler sized to the permit count. Either way at most
+ * {@code max-concurrency} calls hold a connection at once, matching the connection pool, so callers queue on a
+ * permit instead of inside the pool. The virtual-thread executor is looked up reflectively because the build still
+ * targets Java 17.
+ * <ul>
+ *     <li>{@code gateway.repository.wait} (timer): time from subscription until a permit was granted</li>
+ *     <li>{@code gateway.repository.call} (timer): time spent in the repository call</li>
+ *     <li>{@code gateway.repository.in-use} (gauge): permits currently held</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class BlockingRepositoryExecutor implements DisposableBean {
+    private final Semaphore permits;
+    private final Scheduler scheduler;
+    private final Timer waitTimer;
+    private final Timer callTimer;
+
+    public BlockingRepositoryExecutor(MeterRegistry meterRegistry,
+                                      @Value("${gateway.repository.executor.virtual-threads:true}") boolean virtualThreads,
+                                      @Value("${gateway.repository.executor.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency) {
+        this.permits = new Semaphore(maxConcurrency, true);
+        ExecutorService virtualThreadExecutor = virtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        this.scheduler = virtualThreadExecutor != null
+                ? Schedulers.fromExecutorService(virtualThreadExecutor, "repository")
+                : Schedulers.newBoundedElastic(maxConcurrency, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                        "repository", 60, true);
+
+        this.waitTimer = Timer.builder("gateway.repository.wait")
+                .description("Time blocking repository calls waited for a connection permit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.callTimer = Timer.builder("gateway.repository.call")
+                .description("Time spent in blocking repository calls")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("gateway.repository.in-use", permits, p -> maxConcurrency - p.availablePermits())
+                .description("Repository call permits currently held")
+                .register(meterRegistry);
+
+        log.info("Blocking repository calls run on {} with {} permits",
+                virtualThreadExecutor != null ? "virtual threads" : "a bounded elastic scheduler", maxConcurrency);
+    }
+
+    /**
+     * Defers {@code call} to the repository scheduler; a {@code null} result completes empty.
+     */
+    public <T> Mono<T> execute(Callable<T> call) {
+        return Mono.defer(() -> {
+            long submitted = System.nanoTime();
+            return Mono.fromCallable(() -> {
+                permits.acquire();
+                long started = System.nanoTime();
+                waitTimer.record(started - submitted, TimeUnit.NANOSECONDS);
+                try {
+                    return call.call();
+                } finally {
+                    callTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    permits.release();
+                }
+            }).subscribeOn(scheduler);
+        });
+    }
+
+    /**
+     * Runs {@code call} under a permit and waits for it; only for threads that may block, such as startup and
+     * {@code @Scheduled} tasks.
+     */
+    public <T> T executeBlocking(Callable<T> call) {
+        return execute(call).block();
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.info("Virtual threads are not available on Java {}", Runtime.version().feature());
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
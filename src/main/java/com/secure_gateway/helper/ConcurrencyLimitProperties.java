@@ -0,0 +1,34 @@
+package com.secure_gateway.helper;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Adaptive concurrency limit settings bound from {@code gateway.concurrency.*}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "gateway.concurrency")
+public class ConcurrencyLimitProperties {
+    private boolean enabled = true;
+    /** Latency samples are aggregated over this window before the limit is recomputed. */
+    private Duration window = Duration.ofMillis(500);
+    /** Mean latency may rise to this multiple of its long-term average before the limit shrinks. */
+    private double tolerance = 1.5;
+    /** Factor applied to the limit after a window in which the stage failed. */
+    private double backoffRatio = 0.9;
+    /** Profile and session lookups in JwtTokenHeaderValidationFilter. */
+    private Stage auth = new Stage();
+    /** Request decryption in PayloadEncryptionFilter. */
+    private Stage crypto = new Stage();
+
+    @Data
+    public static class Stage {
+        private int initialLimit = 100;
+        private int minLimit = 10;
+        private int maxLimit = 1000;
+    }
+}
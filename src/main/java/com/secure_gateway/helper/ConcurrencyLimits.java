@@ -0,0 +1,123 @@
+package com.secure_gateway.helper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.m2e.utils.api.dto.ApiResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Adaptive concurrency limits for the gateway's expensive stages, and the 503 response for requests over them.
+ * <p>
+ * The 503 {@code ApiResponse} is serialized once with a placeholder request id; a rejection copies the bytes and
+ * writes a fresh UUID over the placeholder, so shedding load costs no serialization.
+ * <ul>
+ *     <li>{@code gateway.concurrency.limit} (gauge): tag {@code stage}</li>
+ *     <li>{@code gateway.concurrency.in-flight} (gauge): tag {@code stage}</li>
+ *     <li>{@code gateway.concurrency.rejected} (counter): tag {@code stage}</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class ConcurrencyLimits {
+    private static final String REQUEST_ID_PLACEHOLDER = new UUID(0, 0).toString();
+
+    public enum Stage {
+        AUTH, CRYPTO
+    }
+
+    private final AdaptiveConcurrencyLimiter[] limiters = new AdaptiveConcurrencyLimiter[Stage.values().length];
+    private final Counter[] rejected = new Counter[Stage.values().length];
+    private final byte[] overloadedBody;
+    private final int requestIdOffset;
+
+    public ConcurrencyLimits(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry,
+                             @Qualifier("gatewayObjectMapper") ObjectMapper objectMapper) throws JsonProcessingException {
+        for (Stage stage : Stage.values()) {
+            ConcurrencyLimitProperties.Stage settings = stage == Stage.AUTH ? properties.getAuth() : properties.getCrypto();
+            AdaptiveConcurrencyLimiter limiter = properties.isEnabled()
+                    ? new AdaptiveConcurrencyLimiter(settings.getInitialLimit(), settings.getMinLimit(),
+                            settings.getMaxLimit(), properties.getTolerance(), properties.getBackoffRatio(),
+                            properties.getWindow().toNanos())
+                    : new AdaptiveConcurrencyLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                            properties.getTolerance(), properties.getBackoffRatio(), properties.getWindow().toNanos());
+            limiters[stage.ordinal()] = limiter;
+
+            String tag = stage.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("gateway.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .description("Current adaptive concurrency limit of a gateway stage")
+                    .tag("stage", tag)
+                    .register(meterRegistry);
+            Gauge.builder("gateway.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .description("Requests currently inside a concurrency-limited gateway stage")
+                    .tag("stage", tag)
+                    .register(meterRegistry);
+            rejected[stage.ordinal()] = Counter.builder("gateway.concurrency.rejected")
+                    .description("Requests rejected because a gateway stage was at its concurrency limit")
+                    .tag("stage", tag)
+                    .register(meterRegistry);
+        }
+
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        this.overloadedBody = objectMapper.writeValueAsBytes(ApiResponse.failure(
+                REQUEST_ID_PLACEHOLDER, String.valueOf(status.value()), status.getReasonPhrase()));
+        this.requestIdOffset = indexOf(overloadedBody, REQUEST_ID_PLACEHOLDER.getBytes(StandardCharsets.US_ASCII));
+
+        log.info("Adaptive concurrency limits {}: auth {}, crypto {}", properties.isEnabled() ? "enabled" : "disabled",
+                properties.getAuth(), properties.getCrypto());
+    }
+
+    /**
+     * A permit for the stage, or {@code null} when it is at its limit; the rejection is counted.
+     */
+    public AdaptiveConcurrencyLimiter.Permit tryAcquire(Stage stage) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiters[stage.ordinal()].tryAcquire();
+        if (permit == null) {
+            rejected[stage.ordinal()].increment();
+        }
+        return permit;
+    }
+
+    /**
+     * Writes the precomputed 503 {@code ApiResponse} with a fresh request id.
+     */
+    public Mono<Void> rejectOverloaded(ServerWebExchange exchange) {
+        byte[] body = overloadedBody.clone();
+        if (requestIdOffset >= 0) {
+            byte[] requestId = UUID.randomUUID().toString().getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(requestId, 0, body, requestIdOffset, requestId.length);
+        }
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().setContentLength(body.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target) {
+        outer:
+        for (int i = 0; i <= bytes.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (bytes[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,96 @@
+package com.secure_gateway.helper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides where box/open work runs. Payloads below the inline threshold are handled on the calling thread, which is
+ * cheaper than a thread hop; larger ones go to a dedicated bounded pool so they cannot stall a Netty event loop.
+ * When the pool's queue is full the returned {@link Mono} fails with a {@link RejectedExecutionException}; tasks that
+ * own a buffer should go through {@link #execute(DataBuffer, Callable)} so a rejected task does not leak it.
+ */
+@Component
+@Slf4j
+public class CryptoExecutionStage implements DisposableBean {
+    private final long inlineThreshold;
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+    private final Counter rejected;
+
+    public CryptoExecutionStage(MeterRegistry meterRegistry,
+                                @Value("${gateway.crypto.executor.inline-threshold:16KB}") DataSize inlineThreshold,
+                                @Value("${gateway.crypto.executor.threads:0}") int threads,
+                                @Value("${gateway.crypto.executor.queue-capacity:1024}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("crypto-");
+        threadFactory.setDaemon(true);
+
+        this.inlineThreshold = inlineThreshold.toBytes();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.scheduler = Schedulers.fromExecutorService(executor, "crypto");
+
+        Gauge.builder("gateway.crypto.executor.queued", executor, e -> e.getQueue().size())
+                .description("Crypto tasks waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("gateway.crypto.executor.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Crypto tasks currently running")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("gateway.crypto.executor.rejected")
+                .description("Crypto tasks rejected because the queue was full")
+                .register(meterRegistry);
+
+        log.info("Crypto execution stage: inline below {} bytes, {} workers, queue capacity {}",
+                this.inlineThreshold, poolSize, queueCapacity);
+    }
+
+    public <T> Mono<T> execute(long payloadSize, Callable<T> task) {
+        if (payloadSize < inlineThreshold) {
+            return Mono.fromCallable(task);
+        }
+        return Mono.fromCallable(task)
+                .subscribeOn(scheduler)
+                .doOnError(RejectedExecutionException.class, e -> {
+                    rejected.increment();
+                    log.warn("Crypto task of {} bytes rejected: queue is full", payloadSize);
+                });
+    }
+
+    /**
+     * Runs a task that takes ownership of {@code input} and releases it. When the task never runs, because the pool
+     * rejected it or the subscriber cancelled before it started, the input is released here instead.
+     */
+    public <T> Mono<T> execute(DataBuffer input, Callable<T> task) {
+        AtomicBoolean claimed = new AtomicBoolean();
+        return execute(input.readableByteCount(), () -> claimed.compareAndSet(false, true) ? task.call() : null)
+                .doFinally(signal -> {
+                    if (claimed.compareAndSet(false, true)) {
+                        DataBufferUtils.release(input);
+                    }
+                });
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,55 @@
+package com.secure_gateway.helper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * zlib-wrapped deflate (RFC 1950), with one reusable {@link Deflater} and {@link Inflater} per thread.
+ */
+@Component
+public class DeflatePayloadCodec implements PayloadCodec {
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    public DeflatePayloadCodec(@Value("${gateway.compression.level:6}") int level) {
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    @Override
+    public String name() {
+        return "deflate";
+    }
+
+    @Override
+    public int id() {
+        return 1;
+    }
+
+    @Override
+    public byte[] compress(byte[] input) {
+        Deflater deflater = deflaters.get();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+        try {
+            DeflateStreams.deflate(deflater, input, output);
+        } finally {
+            deflater.reset();
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] input, long maxSize) {
+        Inflater inflater = inflaters.get();
+        ByteArrayOutputStream output = DeflateStreams.inflateOutput(input.length, maxSize);
+        try {
+            DeflateStreams.inflate(inflater, input, 0, input.length, maxSize, output);
+        } finally {
+            inflater.reset();
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,63 @@
+package com.secure_gateway.helper;
+
+import com.secure_gateway.helper.RequestBodyAggregator.PayloadTooLargeException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate/inflate loops shared by the JDK-based codecs. Callers pass thread-confined, reset {@link Deflater} and
+ * {@link Inflater} instances so the native zlib state is reused instead of allocated per payload.
+ */
+final class DeflateStreams {
+    private static final int CHUNK = 16 * 1024;
+    private static final ThreadLocal<byte[]> CHUNK_BUFFER = ThreadLocal.withInitial(() -> new byte[CHUNK]);
+
+    private DeflateStreams() {
+    }
+
+    static void deflate(Deflater deflater, byte[] input, ByteArrayOutputStream output) {
+        byte[] chunk = CHUNK_BUFFER.get();
+        deflater.setInput(input);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(chunk);
+            output.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Output buffer for inflating {@code inputLength} bytes: sized for a typical 4x ratio, but never beyond
+     * {@code maxSize}, so an incompressible upload cannot allocate more up front than the limit allows.
+     */
+    static ByteArrayOutputStream inflateOutput(int inputLength, long maxSize) {
+        long capacity = Math.min((long) inputLength * 4, Math.min(maxSize, Integer.MAX_VALUE - 8));
+        return new ByteArrayOutputStream((int) Math.max(64, capacity));
+    }
+
+    /**
+     * Inflates {@code input[offset, offset + length)} and returns the number of input bytes consumed.
+     */
+    static int inflate(Inflater inflater, byte[] input, int offset, int length, long maxSize,
+                       ByteArrayOutputStream output) {
+        byte[] chunk = CHUNK_BUFFER.get();
+        inflater.setInput(input, offset, length);
+        try {
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(chunk);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Invalid compressed payload: truncated stream");
+                }
+                if (output.size() + (long) inflated > maxSize) {
+                    throw new PayloadTooLargeException(maxSize);
+                }
+                output.write(chunk, 0, inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid compressed payload: " + e.getMessage(), e);
+        }
+        return length - inflater.getRemaining();
+    }
+}
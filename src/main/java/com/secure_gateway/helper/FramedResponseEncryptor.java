@@ -0,0 +1,189 @@
+package com.secure_gateway.helper;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import com.secure_gateway.helper.GatewayMetrics.Outcome;
+import com.secure_gateway.helper.GatewayMetrics.Payload;
+import com.secure_gateway.helper.GatewayMetrics.RouteMeters;
+import com.secure_gateway.helper.GatewayMetrics.Stage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static com.m2e.gateway.constant.CryptographyConstant.USER_PUBLIC_KEY_BASE64;
+
+/**
+ * Streams a backend response as a sequence of independently boxed frames, so large or chunked responses are
+ * encrypted without buffering the whole body.
+ * <p>
+ * Clients opt in with the {@value #MODE_HEADER}: {@value #MODE_FRAMED} request header. The response then carries
+ * <ul>
+ *     <li>{@value #MODE_HEADER}: {@value #MODE_FRAMED}</li>
+ *     <li>{@value #PUBLIC_KEY_HEADER}: Base64 gateway public key</li>
+ *     <li>{@value #NONCE_HEADER}: Base64 24-byte base nonce</li>
+ *     <li>{@value #KEY_ID_HEADER}: id of the gateway key</li>
+ * </ul>
+ * and a body made of frames:
+ * <pre>
+ * frame      = length (4 bytes, unsigned big-endian) || ciphertext (length bytes)
+ * ciphertext = box(flag (1 byte) || chunk, nonce_i)
+ * flag       = 0x00 for intermediate frames, 0x01 for the final frame
+ * nonce_i    = base nonce with the frame counter i (starting at 0) added to its last 8 bytes as a big-endian integer
+ * </pre>
+ * The flag is inside the authenticated plaintext and each frame has its own nonce, so dropped, reordered or
+ * truncated frames fail to open on the client. A stream is complete only after a frame flagged as final; an empty
+ * backend body yields a single final frame with an empty chunk.
+ */
+@Component
+@Slf4j
+public class FramedResponseEncryptor {
+    public static final String MODE_HEADER = "X-Encrypted-Response-Mode";
+    public static final String MODE_FRAMED = "framed";
+    public static final String PUBLIC_KEY_HEADER = "X-Encryption-Public-Key";
+    public static final String NONCE_HEADER = "X-Encryption-Nonce";
+    public static final String KEY_ID_HEADER = "X-Encryption-Key-Id";
+
+    private static final byte FLAG_INTERMEDIATE = 0x00;
+    private static final byte FLAG_FINAL = 0x01;
+    private static final int LENGTH_PREFIX = 4;
+
+    private final SharedKeyCache sharedKeyCache;
+    private final CryptoExecutionStage cryptoExecutionStage;
+    private final GatewayMetrics gatewayMetrics;
+    private final int maxChunkSize;
+
+    public FramedResponseEncryptor(SharedKeyCache sharedKeyCache, CryptoExecutionStage cryptoExecutionStage,
+                                   GatewayMetrics gatewayMetrics,
+                                   @Value("${gateway.crypto.response.frame-size:64KB}") DataSize frameSize) {
+        this.sharedKeyCache = sharedKeyCache;
+        this.cryptoExecutionStage = cryptoExecutionStage;
+        this.gatewayMetrics = gatewayMetrics;
+        this.maxChunkSize = (int) frameSize.toBytes();
+    }
+
+    public static boolean isRequested(ServerHttpRequest request) {
+        return MODE_FRAMED.equalsIgnoreCase(request.getHeaders().getFirst(MODE_HEADER));
+    }
+
+    public Flux<DataBuffer> encryptResponse(Flux<? extends DataBuffer> fluxBody, ServerWebExchange exchange,
+                                            HttpHeaders responseHeaders, DataBufferFactory bufferFactory) {
+        String userPublicKeyBase64 = exchange.getAttribute(USER_PUBLIC_KEY_BASE64);
+        if (!StringUtils.hasText(userPublicKeyBase64)) {
+            return Flux.error(new IllegalStateException("Missing public key in context"));
+        }
+
+        GatewayKey gatewayKey = exchange.getRequiredAttribute(GatewayKey.ATTRIBUTE);
+        TweetNaclFast.Box box = sharedKeyCache.get(gatewayKey, Base64.getDecoder().decode(userPublicKeyBase64));
+        byte[] baseNonce = TweetNaclFast.randombytes(TweetNaclFast.Box.nonceLength);
+
+        responseHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+        responseHeaders.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        responseHeaders.set(MODE_HEADER, MODE_FRAMED);
+        responseHeaders.set(PUBLIC_KEY_HEADER, gatewayKey.getPublicKeyBase64());
+        responseHeaders.set(KEY_ID_HEADER, gatewayKey.getKeyId());
+        responseHeaders.set(NONCE_HEADER, Base64.getEncoder().encodeToString(baseNonce));
+
+        RouteMeters meters = gatewayMetrics.forExchange(exchange);
+        return Flux.defer(() -> {
+            FrameSequence sequence = new FrameSequence(box, baseNonce, bufferFactory, meters);
+            return fluxBody
+                    .concatMap(dataBuffer -> cryptoExecutionStage.execute(dataBuffer, () -> sequence.frames(dataBuffer)))
+                    .concatMapIterable(frames -> frames)
+                    .concatWith(Mono.fromSupplier(sequence::finish));
+        })
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .doOnError(e -> log.error("Framed response encryption failed", e));
+    }
+
+    static byte[] frameNonce(byte[] baseNonce, long counter) {
+        byte[] nonce = baseNonce.clone();
+        long carry = counter;
+        for (int i = nonce.length - 1; i >= nonce.length - Long.BYTES && carry != 0; i--) {
+            int sum = (nonce[i] & 0xFF) + (int) (carry & 0xFF);
+            nonce[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+        return nonce;
+    }
+
+    /**
+     * Per-subscription framing state. The most recent chunk is held back until the next one arrives, so the last
+     * chunk of the body can be sealed with the final flag.
+     */
+    private class FrameSequence {
+        private final TweetNaclFast.Box box;
+        private final byte[] baseNonce;
+        private final DataBufferFactory bufferFactory;
+        private final RouteMeters meters;
+        private long counter;
+        private byte[] pending;
+
+        FrameSequence(TweetNaclFast.Box box, byte[] baseNonce, DataBufferFactory bufferFactory, RouteMeters meters) {
+            this.box = box;
+            this.baseNonce = baseNonce;
+            this.bufferFactory = bufferFactory;
+            this.meters = meters;
+        }
+
+        List<DataBuffer> frames(DataBuffer dataBuffer) {
+            List<DataBuffer> frames = new ArrayList<>();
+            long encryptStart = System.nanoTime();
+            meters.recordSize(Payload.RESPONSE_PLAINTEXT, dataBuffer.readableByteCount());
+            try {
+                while (dataBuffer.readableByteCount() > 0) {
+                    int length = Math.min(dataBuffer.readableByteCount(), maxChunkSize);
+                    byte[] chunk = new byte[length + 1];
+                    dataBuffer.read(chunk, 1, length);
+
+                    if (pending != null) {
+                        frames.add(seal(pending, FLAG_INTERMEDIATE));
+                    }
+                    pending = chunk;
+                }
+            } catch (RuntimeException e) {
+                frames.forEach(DataBufferUtils::release);
+                meters.record(Stage.ENCRYPT, Outcome.ERROR, encryptStart);
+                throw e;
+            } finally {
+                DataBufferUtils.release(dataBuffer);
+            }
+            meters.record(Stage.ENCRYPT, Outcome.SUCCESS, encryptStart);
+            return frames;
+        }
+
+        DataBuffer finish() {
+            long encryptStart = System.nanoTime();
+            byte[] last = pending != null ? pending : new byte[1];
+            pending = null;
+            DataBuffer frame = seal(last, FLAG_FINAL);
+            meters.record(Stage.ENCRYPT, Outcome.SUCCESS, encryptStart);
+            return frame;
+        }
+
+        private DataBuffer seal(byte[] flaggedChunk, byte flag) {
+            flaggedChunk[0] = flag;
+            byte[] cipherText = box.box(flaggedChunk, frameNonce(baseNonce, counter++));
+
+            int length = cipherText.length;
+            DataBuffer frame = bufferFactory.allocateBuffer(LENGTH_PREFIX + length);
+            frame.write((byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length);
+            frame.write(cipherText);
+            meters.recordSize(Payload.RESPONSE_CIPHERTEXT, LENGTH_PREFIX + length);
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.secure_gateway.helper;
+
+import com.m2e.model.sso.base.SecretkeyGenerator;
+import lombok.Getter;
+
+import java.time.OffsetDateTime;
+import java.util.Base64;
+
+/**
+ * Decoded gateway key pair. The exchange attribute {@link #ATTRIBUTE} holds the key a request was decrypted with,
+ * which is also the key its response is encrypted with.
+ */
+@Getter
+public final class GatewayKey {
+    public static final String ATTRIBUTE = GatewayKey.class.getName();
+
+    private final String keyId;
+    private final byte[] publicKey;
+    private final byte[] secretKey;
+    private final String publicKeyBase64;
+    private final OffsetDateTime createdDate;
+
+    private GatewayKey(String keyId, byte[] publicKey, byte[] secretKey, String publicKeyBase64, OffsetDateTime createdDate) {
+        this.keyId = keyId;
+        this.publicKey = publicKey;
+        this.secretKey = secretKey;
+        this.publicKeyBase64 = publicKeyBase64;
+        this.createdDate = createdDate;
+    }
+
+    public static GatewayKey of(String keyId, byte[] publicKey, byte[] secretKey, OffsetDateTime createdDate) {
+        return new GatewayKey(keyId, publicKey, secretKey, Base64.getEncoder().encodeToString(publicKey), createdDate);
+    }
+
+    public static GatewayKey from(SecretkeyGenerator secretkeyGenerator) {
+        return new GatewayKey(secretkeyGenerator.getId(),
+                Base64.getDecoder().decode(secretkeyGenerator.getPublicKey()),
+                Base64.getDecoder().decode(secretkeyGenerator.getSecretKey()),
+                secretkeyGenerator.getPublicKey(),
+                secretkeyGenerator.getCreatedDate());
+    }
+
+    @Override
+    public String toString() {
+        return "GatewayKey[" + keyId + ", created " + createdDate + "]";
+    }
+}
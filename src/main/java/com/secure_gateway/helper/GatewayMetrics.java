@@ -0,0 +1,123 @@
+package com.secure_gateway.helper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage timers and payload size summaries for the gateway filters, tagged by route id.
+ * <p>
+ * All meters of a route are registered together the first time the route is seen and kept in arrays indexed by
+ * stage, outcome and payload kind, so recording is an array read plus the meter update: no tag lists, meter ids or
+ * registry lookups on the request path.
+ * <ul>
+ *     <li>{@code gateway.filter.stage} (timer): tags {@code route}, {@code stage}, {@code outcome}</li>
+ *     <li>{@code gateway.payload.size} (summary, bytes): tags {@code route}, {@code direction}, {@code form}</li>
+ * </ul>
+ */
+@Component
+public class GatewayMetrics {
+    private static final String UNKNOWN_ROUTE = "unknown";
+
+    public enum Stage {
+        JWT_VALIDATION, PROFILE_LOOKUP, SESSION_LOOKUP, DECRYPT, ENCRYPT
+    }
+
+    public enum Outcome {
+        SUCCESS, REJECTED, ERROR
+    }
+
+    public enum Payload {
+        REQUEST_CIPHERTEXT("request", "ciphertext"),
+        REQUEST_PLAINTEXT("request", "plaintext"),
+        RESPONSE_PLAINTEXT("response", "plaintext"),
+        RESPONSE_CIPHERTEXT("response", "ciphertext");
+
+        private final String direction;
+        private final String form;
+
+        Payload(String direction, String form) {
+            this.direction = direction;
+            this.form = form;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, RouteMeters> routes = new ConcurrentHashMap<>();
+
+    public GatewayMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Meters of the route the exchange was matched to, or of {@value #UNKNOWN_ROUTE} before routing.
+     */
+    public RouteMeters forExchange(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : UNKNOWN_ROUTE;
+
+        RouteMeters meters = routes.get(routeId);
+        if (meters == null) {
+            meters = routes.computeIfAbsent(routeId, id -> new RouteMeters(meterRegistry, id));
+        }
+        return meters;
+    }
+
+    public static final class RouteMeters {
+        private static final int OUTCOMES = Outcome.values().length;
+
+        private final Timer[] timers;
+        private final DistributionSummary[] sizes;
+
+        private RouteMeters(MeterRegistry meterRegistry, String routeId) {
+            Stage[] stages = Stage.values();
+            Outcome[] outcomes = Outcome.values();
+            this.timers = new Timer[stages.length * OUTCOMES];
+            for (Stage stage : stages) {
+                for (Outcome outcome : outcomes) {
+                    timers[stage.ordinal() * OUTCOMES + outcome.ordinal()] = Timer.builder("gateway.filter.stage")
+                            .description("Time spent in a gateway filter stage")
+                            .tag("route", routeId)
+                            .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                            .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                            .publishPercentileHistogram()
+                            .register(meterRegistry);
+                }
+            }
+
+            Payload[] payloads = Payload.values();
+            this.sizes = new DistributionSummary[payloads.length];
+            for (Payload payload : payloads) {
+                sizes[payload.ordinal()] = DistributionSummary.builder("gateway.payload.size")
+                        .description("Size of request and response bodies before and after the crypto stages")
+                        .baseUnit("bytes")
+                        .tag("route", routeId)
+                        .tag("direction", payload.direction)
+                        .tag("form", payload.form)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+            }
+        }
+
+        /**
+         * Records a stage that started at {@code startNanos} ({@link System#nanoTime()}).
+         */
+        public void record(Stage stage, Outcome outcome, long startNanos) {
+            timers[stage.ordinal() * OUTCOMES + outcome.ordinal()]
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void recordSize(Payload payload, long bytes) {
+            sizes[payload.ordinal()].record(bytes);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.secure_gateway.helper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * GZIP (RFC 1952) written and read around a raw {@link Deflater}/{@link Inflater} kept per thread, since
+ * {@code GZIPOutputStream} and {@code GZIPInputStream} allocate fresh zlib state on every use. Only single-member
+ * streams are accepted.
+ */
+@Component
+public class GzipPayloadCodec implements PayloadCodec {
+    private static final int MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int TRAILER = 8;
+    private static final byte[] HEADER = {(byte) MAGIC, (byte) (MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    public GzipPayloadCodec(@Value("${gateway.compression.level:6}") int level) {
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    @Override
+    public String name() {
+        return "gzip";
+    }
+
+    @Override
+    public int id() {
+        return 2;
+    }
+
+    @Override
+    public byte[] compress(byte[] input) {
+        Deflater deflater = deflaters.get();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+        output.write(HEADER, 0, HEADER.length);
+        try {
+            DeflateStreams.deflate(deflater, input, output);
+        } finally {
+            deflater.reset();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(input);
+        writeIntLE(output, (int) crc.getValue());
+        writeIntLE(output, input.length);
+        return output.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] input, long maxSize) {
+        int offset = skipHeader(input);
+        Inflater inflater = inflaters.get();
+        ByteArrayOutputStream output = DeflateStreams.inflateOutput(input.length, maxSize);
+        try {
+            offset += DeflateStreams.inflate(inflater, input, offset, input.length - offset, maxSize, output);
+        } finally {
+            inflater.reset();
+        }
+
+        if (input.length - offset < TRAILER) {
+            throw new IllegalArgumentException("Invalid compressed payload: missing gzip trailer");
+        }
+        byte[] plain = output.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(plain);
+        if (readIntLE(input, offset) != (int) crc.getValue() || readIntLE(input, offset + 4) != plain.length) {
+            throw new IllegalArgumentException("Invalid compressed payload: gzip checksum mismatch");
+        }
+        return plain;
+    }
+
+    private static int skipHeader(byte[] input) {
+        if (input.length < HEADER.length + TRAILER
+                || (input[0] & 0xff | (input[1] & 0xff) << 8) != MAGIC || input[2] != Deflater.DEFLATED) {
+            throw new IllegalArgumentException("Invalid compressed payload: not a gzip stream");
+        }
+        int flags = input[3] & 0xff;
+        int offset = HEADER.length;
+        if ((flags & FEXTRA) != 0) {
+            offset += 2 + (input[offset] & 0xff | (input[offset + 1] & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            offset = skipZeroTerminated(input, offset);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            offset = skipZeroTerminated(input, offset);
+        }
+        if ((flags & FHCRC) != 0) {
+            offset += 2;
+        }
+        if (offset > input.length) {
+            throw new IllegalArgumentException("Invalid compressed payload: truncated gzip header");
+        }
+        return offset;
+    }
+
+    private static int skipZeroTerminated(byte[] input, int offset) {
+        while (offset < input.length && input[offset] != 0) {
+            offset++;
+        }
+        return offset + 1;
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream output, int value) {
+        output.write(value);
+        output.write(value >>> 8);
+        output.write(value >>> 16);
+        output.write(value >>> 24);
+    }
+
+    private static int readIntLE(byte[] input, int offset) {
+        return (input[offset] & 0xff)
+                | (input[offset + 1] & 0xff) << 8
+                | (input[offset + 2] & 0xff) << 16
+                | (input[offset + 3] & 0xff) << 24;
+    }
+}
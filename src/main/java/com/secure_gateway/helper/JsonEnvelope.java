@@ -0,0 +1,84 @@
+package com.secure_gateway.helper;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Writes the JSON {@code EncryptedPayloadDTO} envelope straight into a {@link DataBuffer}:
+ * <pre>
+ * {"cipherText":"...","publicKey":"...","nonce":"...","keyId":"...","compression":"..."}
+ * </pre>
+ * The same document Jackson produces for the DTO, but sized up front from the Base64 lengths and encoded in place,
+ * without an intermediate DTO, {@code String} or byte array copy of the cipher text.
+ */
+public final class JsonEnvelope {
+    private static final byte[] CIPHER_TEXT = ascii("{\"cipherText\":\"");
+    private static final byte[] PUBLIC_KEY = ascii("\",\"publicKey\":\"");
+    private static final byte[] NONCE = ascii("\",\"nonce\":\"");
+    private static final byte[] KEY_ID = ascii("\",\"keyId\":\"");
+    private static final byte[] COMPRESSION = ascii("\",\"compression\":\"");
+    private static final byte[] END = ascii("\"}");
+
+    private JsonEnvelope() {
+    }
+
+    /**
+     * Writes a complete envelope into one buffer of exactly the envelope's size; {@code compression} is omitted
+     * when {@code null}.
+     */
+    public static DataBuffer write(DataBufferFactory bufferFactory, String keyId, String compression, byte[] nonce,
+                                   byte[] publicKey, byte[] cipherText) {
+        byte[] keyIdBytes = JsonStringEncoder.getInstance().quoteAsUTF8(keyId != null ? keyId : "");
+        byte[] compressionBytes = compression != null ? JsonStringEncoder.getInstance().quoteAsUTF8(compression) : null;
+
+        int size = CIPHER_TEXT.length + base64Length(cipherText.length)
+                + PUBLIC_KEY.length + base64Length(publicKey.length)
+                + NONCE.length + base64Length(nonce.length)
+                + KEY_ID.length + keyIdBytes.length
+                + (compressionBytes != null ? COMPRESSION.length + compressionBytes.length : 0)
+                + END.length;
+
+        DataBuffer envelope = bufferFactory.allocateBuffer(size);
+        try {
+            envelope.write(CIPHER_TEXT);
+            writeBase64(envelope, cipherText);
+            envelope.write(PUBLIC_KEY);
+            writeBase64(envelope, publicKey);
+            envelope.write(NONCE);
+            writeBase64(envelope, nonce);
+            envelope.write(KEY_ID);
+            envelope.write(keyIdBytes);
+            if (compressionBytes != null) {
+                envelope.write(COMPRESSION);
+                envelope.write(compressionBytes);
+            }
+            envelope.write(END);
+        } catch (IOException | RuntimeException e) {
+            DataBufferUtils.release(envelope);
+            throw new IllegalStateException("Failed to write JSON envelope", e);
+        }
+        return envelope;
+    }
+
+    static int base64Length(int length) {
+        return 4 * ((length + 2) / 3);
+    }
+
+    private static void writeBase64(DataBuffer dataBuffer, byte[] bytes) throws IOException {
+        // Closing the encoder flushes the final quantum and padding; closing a DataBuffer stream leaves the buffer as is
+        try (OutputStream out = Base64.getEncoder().wrap(dataBuffer.asOutputStream())) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,152 @@
+package com.secure_gateway.helper;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the {@link KeyRing} in the background once the context has started, so a slow or unreachable database no
+ * longer holds up startup.
+ * <p>
+ * The ring is loaded from the database (creating a key when none is current), retrying with backoff until it
+ * succeeds. When the first attempt fails the ring last sealed to the {@link SealedKeyFile} is loaded meanwhile; the
+ * database load replaces it once it succeeds. Until a ring is loaded the {@code keyRing} health indicator is DOWN,
+ * which fails the readiness group and, through {@code ReadinessHealthCheckHandler}, reports the node DOWN to Eureka.
+ * <p>
+ * A ring served from the sealed key file is stale once its current key's rotation slot ended more than two refresh
+ * intervals ago: peers that reach the database have moved on to a key this node does not have. The health indicator
+ * then reports OUT_OF_SERVICE. A ring loaded from the database that merely failed to refresh is not flagged, since
+ * then every node holds the same keys and taking them out would only turn a database outage into a gateway outage.
+ * <ul>
+ *     <li>{@code gateway.startup.ready-time} (time gauge): JVM start until the first ring was loaded</li>
+ *     <li>{@code gateway.keys.provisioning} (timer): context start until the ring was loaded from the database</li>
+ *     <li>{@code gateway.keys.sealed-fallback} (gauge): 1 while serving the ring from the sealed key file</li>
+ *     <li>{@code gateway.keys.stale} (gauge): 1 while the ring is stale</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class KeyProvisioner implements SmartLifecycle {
+    public enum Source {
+        NONE, SEALED_FILE, DATABASE
+    }
+
+    private final KeyRing keyRing;
+    private final Duration retryBackoff;
+    private final Duration maxBackoff;
+    private final Duration staleGrace;
+    private final Timer provisioningTimer;
+
+    private final AtomicBoolean fallbackAttempted = new AtomicBoolean();
+    private final AtomicInteger failedAttempts = new AtomicInteger();
+    private volatile Source source = Source.NONE;
+    private volatile long readyMillis = -1;
+    private volatile Throwable lastError;
+    private volatile Disposable provisioning;
+
+    public KeyProvisioner(KeyRing keyRing, MeterRegistry meterRegistry,
+                          @Value("${gateway.crypto.key-ring.startup.retry-backoff:PT1S}") Duration retryBackoff,
+                          @Value("${gateway.crypto.key-ring.startup.max-backoff:PT30S}") Duration maxBackoff,
+                          @Value("${gateway.crypto.key-ring.refresh-interval:PT1M}") Duration refreshInterval) {
+        this.keyRing = keyRing;
+        this.retryBackoff = retryBackoff;
+        this.maxBackoff = maxBackoff;
+        this.staleGrace = refreshInterval.multipliedBy(2);
+        this.provisioningTimer = Timer.builder("gateway.keys.provisioning")
+                .description("Time from context start until the key ring was loaded from the database")
+                .register(meterRegistry);
+        TimeGauge.builder("gateway.startup.ready-time", this,
+                        TimeUnit.MILLISECONDS, provisioner -> provisioner.readyMillis < 0 ? Double.NaN : provisioner.readyMillis)
+                .description("Time from JVM start until the gateway had keys to serve encrypted traffic")
+                .register(meterRegistry);
+        Gauge.builder("gateway.keys.sealed-fallback", this, provisioner -> provisioner.source == Source.SEALED_FILE ? 1 : 0)
+                .description("1 while gateway keys are served from the sealed key file")
+                .register(meterRegistry);
+        Gauge.builder("gateway.keys.stale", this, provisioner -> provisioner.isStale() ? 1 : 0)
+                .description("1 while the current gateway key is from a rotation slot peers have moved past")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        long started = System.nanoTime();
+        provisioning = Mono.fromRunnable(keyRing::refresh)
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnError(this::onAttemptFailed)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, retryBackoff).maxBackoff(maxBackoff))
+                .subscribe(null,
+                        e -> log.error("Key ring provisioning stopped", e),
+                        () -> {
+                            provisioningTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                            lastError = null;
+                            ready(Source.DATABASE);
+                        });
+        log.info("Provisioning gateway keys in the background");
+    }
+
+    @Override
+    public void stop() {
+        Disposable task = provisioning;
+        provisioning = null;
+        if (task != null) {
+            task.dispose();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return provisioning != null;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public boolean isStale() {
+        return source == Source.SEALED_FILE && keyRing.isStale(staleGrace);
+    }
+
+    public int getFailedAttempts() {
+        return failedAttempts.get();
+    }
+
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    private void onAttemptFailed(Throwable e) {
+        lastError = e;
+        log.warn("Loading the key ring from the database failed (attempt {}): {}", failedAttempts.incrementAndGet(),
+                e.toString());
+        if (fallbackAttempted.compareAndSet(false, true) && keyRing.loadSealed()) {
+            log.warn("Serving with the sealed key file until the database is reachable");
+            ready(Source.SEALED_FILE);
+        }
+    }
+
+    private synchronized void ready(Source loadedFrom) {
+        source = loadedFrom;
+        if (readyMillis < 0) {
+            readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            log.info("Gateway keys ready {} ms after JVM start, from the {}", readyMillis,
+                    loadedFrom == Source.DATABASE ? "database" : "sealed key file");
+        } else {
+            log.info("Gateway keys reloaded from the {}", loadedFrom == Source.DATABASE ? "database" : "sealed key file");
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.secure_gateway.helper;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import com.m2e.model.sso.base.SecretkeyGenerator;
+import com.secure_gateway.repository.GatewayKeyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Gateway key pairs shared by every node through the gateway key table.
+ * <p>
+ * The newest key is current and used for requests that do not name a key. Time is divided into rotation slots of
+ * {@code rotation-interval} since the epoch, and each slot has one key, whose id is derived from the slot number. A
+ * node that finds no key created in the current slot inserts the slot's key; when several nodes race, the insert of
+ * all but one fails on the duplicate id, and every node then re-reads the ring, so they all agree on the same current
+ * key. Older keys keep decrypting for the overlap window after their slot ends, so clients holding the previous
+ * public key are not cut off. Every node refreshes the ring on a schedule and picks up keys created by its peers.
+ * <p>
+ * The ring is empty until {@link KeyProvisioner} has loaded it after startup. Every ring loaded from the database is
+ * also written to the {@link SealedKeyFile}, which {@link #loadSealed()} falls back to while the database is
+ * unreachable.
+ */
+@Component
+@Slf4j
+public class KeyRing {
+    private final GatewayKeyRepository gatewayKeyRepository;
+    private final SharedKeyCache sharedKeyCache;
+    private final BlockingRepositoryExecutor blockingRepositoryExecutor;
+    private final SealedKeyFile sealedKeyFile;
+    private final Duration rotationInterval;
+    private final Duration overlap;
+
+    private volatile Keys keys = new Keys(null, Map.of());
+
+    public KeyRing(GatewayKeyRepository gatewayKeyRepository,
+                   SharedKeyCache sharedKeyCache,
+                   BlockingRepositoryExecutor blockingRepositoryExecutor,
+                   SealedKeyFile sealedKeyFile,
+                   @Value("${gateway.crypto.key-ring.rotation-interval:P1D}") Duration rotationInterval,
+                   @Value("${gateway.crypto.key-ring.overlap:PT6H}") Duration overlap) {
+        this.gatewayKeyRepository = gatewayKeyRepository;
+        this.sharedKeyCache = sharedKeyCache;
+        this.blockingRepositoryExecutor = blockingRepositoryExecutor;
+        this.sealedKeyFile = sealedKeyFile;
+        this.rotationInterval = rotationInterval;
+        this.overlap = overlap;
+    }
+
+    /**
+     * The key for new envelopes, or {@code null} before the ring has been loaded.
+     */
+    public GatewayKey current() {
+        return keys.current();
+    }
+
+    /**
+     * The key named by an envelope; {@code null} key ids resolve to the current key, unknown or retired ones to
+     * {@code null}.
+     */
+    public GatewayKey get(String keyId) {
+        Keys snapshot = keys;
+        return keyId == null ? snapshot.current() : snapshot.byId().get(keyId);
+    }
+
+    public boolean isLoaded() {
+        return keys.current() != null;
+    }
+
+    /**
+     * Whether the current key's rotation slot ended more than {@code grace} ago. Peers have then moved on to a newer
+     * key that this node does not have, and envelopes naming it are rejected here.
+     */
+    public boolean isStale(Duration grace) {
+        GatewayKey current = keys.current();
+        if (current == null) {
+            return false;
+        }
+        OffsetDateTime slotEnd = slotStart(slot(current.getCreatedDate()) + 1);
+        return OffsetDateTime.now().isAfter(slotEnd.plus(grace));
+    }
+
+    /**
+     * Loads the ring from the database, creating the current slot's key when it does not exist yet.
+     */
+    @Scheduled(initialDelayString = "${gateway.crypto.key-ring.refresh-interval:PT1M}",
+            fixedDelayString = "${gateway.crypto.key-ring.refresh-interval:PT1M}")
+    public synchronized void refresh() {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<SecretkeyGenerator> stored = find(now);
+
+        long slot = slot(now);
+        if (stored.isEmpty() || stored.get(0).getCreatedDate().isBefore(slotStart(slot))) {
+            rotate(slot, now);
+            stored = find(now);
+            if (stored.isEmpty()) {
+                throw new IllegalStateException("Gateway key for rotation slot " + slot + " not found after insert");
+            }
+        }
+
+        List<GatewayKey> ring = new ArrayList<>(stored.size());
+        for (SecretkeyGenerator secretkeyGenerator : stored) {
+            ring.add(GatewayKey.from(secretkeyGenerator));
+        }
+        if (install(ring)) {
+            sealedKeyFile.write(ring);
+        }
+    }
+
+    /**
+     * Loads the ring last sealed to the local key file, unless a ring is already loaded. Returns whether a ring is
+     * loaded afterwards.
+     */
+    public synchronized boolean loadSealed() {
+        if (isLoaded()) {
+            return true;
+        }
+        List<GatewayKey> ring = sealedKeyFile.read();
+        if (ring.isEmpty()) {
+            return false;
+        }
+        install(ring);
+        if (isStale(Duration.ZERO)) {
+            log.error("Current gateway key from the sealed key file is from an earlier rotation slot; envelopes "
+                    + "naming newer keys will be rejected until the database is reachable");
+        }
+        return true;
+    }
+
+    /**
+     * Swaps in the ring, newest key first, and drops the shared keys of retired ones. Returns whether the set of keys
+     * changed.
+     */
+    private boolean install(List<GatewayKey> ring) {
+        Map<String, GatewayKey> byId = new LinkedHashMap<>();
+        for (GatewayKey gatewayKey : ring) {
+            byId.put(gatewayKey.getKeyId(), gatewayKey);
+        }
+
+        Keys previous = keys;
+        keys = new Keys(ring.get(0), Map.copyOf(byId));
+
+        previous.byId().keySet().stream()
+                .filter(keyId -> !byId.containsKey(keyId))
+                .forEach(keyId -> {
+                    log.info("Gateway key {} retired", keyId);
+                    sharedKeyCache.invalidateKeyId(keyId);
+                });
+        if (previous.current() == null || !previous.current().getKeyId().equals(keys.current().getKeyId())) {
+            log.info("Current gateway key is {} ({} keys in ring)", keys.current(), byId.size());
+        }
+        return !previous.byId().keySet().equals(byId.keySet());
+    }
+
+    private List<SecretkeyGenerator> find(OffsetDateTime now) {
+        return new ArrayList<>(blockingRepositoryExecutor.executeBlocking(() ->
+                gatewayKeyRepository.findByCreatedDateAfterOrderByCreatedDateDesc(now.minus(rotationInterval).minus(overlap))));
+    }
+
+    private long slot(OffsetDateTime now) {
+        return Math.floorDiv(now.toInstant().toEpochMilli(), rotationInterval.toMillis());
+    }
+
+    private OffsetDateTime slotStart(long slot) {
+        return Instant.ofEpochMilli(slot * rotationInterval.toMillis()).atOffset(ZoneOffset.UTC);
+    }
+
+    /**
+     * Inserts the slot's key. Losing the race to a peer is expected; the caller re-reads the ring either way.
+     */
+    private void rotate(long slot, OffsetDateTime now) {
+        TweetNaclFast.Box.KeyPair keyPair = TweetNaclFast.Box.keyPair();
+
+        SecretkeyGenerator secretkeyGenerator = new SecretkeyGenerator();
+        // The interval is part of the name so a changed rotation interval cannot reuse the id of an old slot
+        secretkeyGenerator.setId(UUID.nameUUIDFromBytes(("gateway-key:" + rotationInterval.toMillis() + ":" + slot)
+                .getBytes(StandardCharsets.UTF_8)).toString());
+        secretkeyGenerator.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublicKey()));
+        secretkeyGenerator.setSecretKey(Base64.getEncoder().encodeToString(keyPair.getSecretKey()));
+        secretkeyGenerator.setCreatedDate(now);
+
+        try {
+            blockingRepositoryExecutor.executeBlocking(() -> {
+                gatewayKeyRepository.insert(secretkeyGenerator);
+                return null;
+            });
+            log.info("Generated gateway key {} for rotation slot {}", secretkeyGenerator.getId(), slot);
+        } catch (DataIntegrityViolationException e) {
+            log.info("Gateway key for rotation slot {} was created by a peer", slot);
+        }
+    }
+
+    private record Keys(GatewayKey current, Map<String, GatewayKey> byId) {
+    }
+}
@@ -0,0 +1,290 @@
+package com.secure_gateway.helper;
+
+import com.secure_gateway.util.CrytoUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects envelopes whose (nonce, client public key) pair was already opened within the replay window.
+ * <p>
+ * With {@code require-timestamp} on, clients must start every nonce with their clock as big-endian epoch
+ * milliseconds (see {@link CrytoUtil#newNonce()}); the remaining 16 bytes stay random. This is off by default because
+ * existing clients send fully random nonces, and turning it on rejects every envelope from a client that has not
+ * switched. The nonce is authenticated by the box, so the timestamp cannot be moved without the envelope failing to
+ * open. {@link #isWithinWindow} then accepts a timestamp at most {@code clock-skew} ahead of this node's
+ * clock and at most {@code rotation-interval * (generations - 1) - clock-skew} behind it, which keeps every envelope
+ * that would still be accepted inside the period its pair is remembered. Older envelopes are rejected outright instead
+ * of slipping through once their generation has been dropped.
+ * <p>
+ * Seen pairs are kept in a ring of Bloom filters, one per {@code rotation-interval}: lookups test every generation,
+ * inserts go to the newest one, and rotation drops the oldest. A pair is therefore remembered for at least
+ * {@code rotation-interval * (generations - 1)}. Memory is fixed up front from {@code expected-rate} and the target
+ * false-positive rate, whatever the actual traffic; both the memory and the current estimated false-positive rate are
+ * exported as gauges.
+ * <p>
+ * Bits live in plain {@code long[]} words set with an atomic OR and read without locks; rotation swaps an immutable
+ * snapshot of the ring. Two copies of the same envelope racing through {@link #markSeen} at the same instant can both
+ * get through; every later copy is rejected. Hash seeds are random per process so clients cannot aim collisions at
+ * other users' nonces.
+ * <p>
+ * The filters are per node. An envelope captured from one node can still be replayed once against each other node
+ * while its pair is still remembered there, or, with {@code require-timestamp} on, while its timestamp is inside the
+ * window. Without the timestamp a node that has dropped the pair's generation accepts the envelope again as well. Closing it fully needs a shared
+ * store of seen nonces, which this detector deliberately avoids on the hot path.
+ */
+@Component
+@Slf4j
+public class NonceReplayDetector {
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final boolean enabled;
+    private final int generationCount;
+    private final long bitsPerFilter;
+    private final int hashCount;
+    private final long seed1;
+    private final long seed2;
+    private final boolean requireTimestamp;
+    private final long maxAgeMillis;
+    private final long clockSkewMillis;
+    private final Counter rejected;
+    private final Counter expired;
+
+    private volatile Generations generations;
+
+    public NonceReplayDetector(MeterRegistry meterRegistry,
+                               @Value("${gateway.crypto.replay.enabled:true}") boolean enabled,
+                               @Value("${gateway.crypto.replay.rotation-interval:PT1M}") Duration rotationInterval,
+                               @Value("${gateway.crypto.replay.generations:3}") int generations,
+                               @Value("${gateway.crypto.replay.expected-rate:50000}") long expectedRate,
+                               @Value("${gateway.crypto.replay.false-positive-rate:1e-6}") double falsePositiveRate,
+                               @Value("${gateway.crypto.replay.require-timestamp:false}") boolean requireTimestamp,
+                               @Value("${gateway.crypto.replay.clock-skew:PT30S}") Duration clockSkew) {
+        if (generations < 2) {
+            throw new IllegalArgumentException("gateway.crypto.replay.generations must be at least 2");
+        }
+        Duration retention = rotationInterval.multipliedBy(generations - 1);
+        if (requireTimestamp && (clockSkew.isNegative() || retention.compareTo(clockSkew) <= 0)) {
+            throw new IllegalArgumentException("gateway.crypto.replay.clock-skew must be shorter than "
+                    + "rotation-interval * (generations - 1)");
+        }
+        this.enabled = enabled;
+        this.generationCount = generations;
+        this.requireTimestamp = requireTimestamp;
+        this.maxAgeMillis = retention.minus(clockSkew).toMillis();
+        this.clockSkewMillis = clockSkew.toMillis();
+
+        // Each filter holds one rotation interval of traffic; split the target rate across the filters a lookup tests
+        long insertionsPerFilter = Math.max(1, expectedRate * rotationInterval.toMillis() / 1000);
+        double perFilterRate = falsePositiveRate / generations;
+        long bits = (long) Math.ceil(-insertionsPerFilter * Math.log(perFilterRate) / (Math.log(2) * Math.log(2)));
+        this.bitsPerFilter = Math.max(Long.SIZE, (bits + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitsPerFilter / insertionsPerFilter * Math.log(2)));
+
+        SecureRandom random = new SecureRandom();
+        this.seed1 = random.nextLong();
+        this.seed2 = random.nextLong();
+
+        Filter[] filters = new Filter[enabled ? generations : 0];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = new Filter(bitsPerFilter);
+        }
+        this.generations = new Generations(filters, 0);
+
+        this.rejected = Counter.builder("gateway.replay.rejected")
+                .description("Envelopes rejected as replays")
+                .register(meterRegistry);
+        this.expired = Counter.builder("gateway.replay.expired")
+                .description("Envelopes rejected because their nonce timestamp was outside the replay window")
+                .register(meterRegistry);
+        Gauge.builder("gateway.replay.memory", this, detector -> detector.enabled
+                        ? (double) detector.generationCount * detector.bitsPerFilter / Byte.SIZE : 0)
+                .description("Memory held by the replay filters")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("gateway.replay.false-positive-rate", this, NonceReplayDetector::falsePositiveRate)
+                .description("Estimated probability that a fresh envelope is mistaken for a replay")
+                .register(meterRegistry);
+
+        if (enabled) {
+            log.info("Nonce replay detection: window {} ({}), {} generations of {} bits, {} hashes "
+                            + "({} insertions each)", retention,
+                    requireTimestamp ? "timestamped nonces, clock skew " + clockSkew : "nonce timestamps not checked",
+                    generations, bitsPerFilter, hashCount, insertionsPerFilter);
+        }
+    }
+
+    /**
+     * Checked before {@link #isReplay}: {@code true} when the timestamp at the start of the nonce falls inside the
+     * replay window. Always {@code true} when detection or {@code require-timestamp} is off.
+     */
+    public boolean isWithinWindow(byte[] nonce) {
+        return isWithinWindow(nonce, System.currentTimeMillis());
+    }
+
+    boolean isWithinWindow(byte[] nonce, long nowMillis) {
+        if (!enabled || !requireTimestamp) {
+            return true;
+        }
+        if (nonce.length < Long.BYTES
+                || !isWithin(CrytoUtil.nonceTimestamp(nonce), nowMillis - maxAgeMillis, nowMillis + clockSkewMillis)) {
+            expired.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isWithin(long timestamp, long from, long to) {
+        return timestamp >= from && timestamp <= to;
+    }
+
+    /**
+     * Cheap check before the envelope is opened: {@code true} when the pair was probably seen already. Nothing is
+     * recorded, so forged envelopes that fail to open cannot fill the filters.
+     */
+    public boolean isReplay(byte[] nonce, byte[] publicKey) {
+        if (!enabled) {
+            return false;
+        }
+        long h1 = hash(nonce, publicKey, seed1);
+        long h2 = hash(nonce, publicKey, seed2) | 1;
+        Generations snapshot = generations;
+        for (Filter filter : snapshot.filters()) {
+            if (filter.mightContain(h1, h2)) {
+                rejected.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the pair of an envelope that opened successfully. Returns {@code false} when it was already present,
+     * i.e. a concurrent copy of the same envelope got there first.
+     */
+    public boolean markSeen(byte[] nonce, byte[] publicKey) {
+        if (!enabled) {
+            return true;
+        }
+        long h1 = hash(nonce, publicKey, seed1);
+        long h2 = hash(nonce, publicKey, seed2) | 1;
+        Generations snapshot = generations;
+        Filter[] filters = snapshot.filters();
+        boolean fresh = filters[snapshot.current()].put(h1, h2);
+        if (!fresh) {
+            rejected.increment();
+        }
+        return fresh;
+    }
+
+    /**
+     * Starts a new generation and forgets the oldest one.
+     */
+    @Scheduled(initialDelayString = "${gateway.crypto.replay.rotation-interval:PT1M}",
+            fixedRateString = "${gateway.crypto.replay.rotation-interval:PT1M}")
+    public void rotate() {
+        if (!enabled) {
+            return;
+        }
+        Generations snapshot = generations;
+        Filter[] filters = snapshot.filters().clone();
+        int next = (snapshot.current() + 1) % filters.length;
+        filters[next] = new Filter(bitsPerFilter);
+        generations = new Generations(filters, next);
+    }
+
+    private double falsePositiveRate() {
+        if (!enabled) {
+            return 0;
+        }
+        double pass = 1;
+        for (Filter filter : generations.filters()) {
+            double fill = 1 - Math.exp(-(double) hashCount * filter.insertions.sum() / bitsPerFilter);
+            pass *= 1 - Math.pow(fill, hashCount);
+        }
+        return 1 - pass;
+    }
+
+    private static long hash(byte[] nonce, byte[] publicKey, long seed) {
+        long h = seed;
+        h = mixBytes(h, nonce);
+        h = mixBytes(h, publicKey);
+        return mix(h ^ (nonce.length + publicKey.length));
+    }
+
+    private static long mixBytes(long h, byte[] bytes) {
+        int i = 0;
+        for (; i + Long.BYTES <= bytes.length; i += Long.BYTES) {
+            long word = 0;
+            for (int j = 0; j < Long.BYTES; j++) {
+                word = (word << 8) | (bytes[i + j] & 0xFF);
+            }
+            h = mix(h ^ word) * 0x9E3779B97F4A7C15L;
+        }
+        long tail = 0;
+        for (; i < bytes.length; i++) {
+            tail = (tail << 8) | (bytes[i] & 0xFF);
+        }
+        return mix(h ^ tail) * 0x9E3779B97F4A7C15L;
+    }
+
+    /** SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private record Generations(Filter[] filters, int current) {
+    }
+
+    /**
+     * Bloom filter probed with double hashing: bit i is {@code h1 + i * h2} modulo the filter size.
+     */
+    private final class Filter {
+        private final long[] words;
+        private final LongAdder insertions = new LongAdder();
+
+        Filter(long bits) {
+            this.words = new long[(int) (bits / Long.SIZE)];
+        }
+
+        boolean mightContain(long h1, long h2) {
+            long combined = h1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(combined, bitsPerFilter);
+                if (((long) WORDS.getAcquire(words, (int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+                combined += h2;
+            }
+            return true;
+        }
+
+        boolean put(long h1, long h2) {
+            boolean changed = false;
+            long combined = h1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(combined, bitsPerFilter);
+                long mask = 1L << bit;
+                long previous = (long) WORDS.getAndBitwiseOr(words, (int) (bit >>> 6), mask);
+                changed |= (previous & mask) == 0;
+                combined += h2;
+            }
+            if (changed) {
+                insertions.increment();
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.secure_gateway.helper;
+
+/**
+ * Plaintext compression applied before boxing (responses) or after opening (requests). Implementations are Spring
+ * beans picked up by {@link PayloadCompression}; each needs a unique name and binary envelope id.
+ */
+public interface PayloadCodec {
+
+    /**
+     * Name used in the JSON envelope's {@code compression} field and in {@value PayloadCompression#ACCEPT_HEADER}.
+     */
+    String name();
+
+    /**
+     * Identifier carried in the low bits of the {@link BinaryEnvelope} flags, 1 to 3.
+     */
+    int id();
+
+    byte[] compress(byte[] input);
+
+    /**
+     * Decompresses {@code input}, failing with {@link RequestBodyAggregator.PayloadTooLargeException} as soon as the
+     * output would exceed {@code maxSize} bytes and with {@link IllegalArgumentException} on malformed input.
+     */
+    byte[] decompress(byte[] input, long maxSize);
+}
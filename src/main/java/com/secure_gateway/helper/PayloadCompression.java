@@ -0,0 +1,106 @@
+package com.secure_gateway.helper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compress-then-encrypt for envelope payloads.
+ * <p>
+ * Responses: a client that lists codecs in {@value #ACCEPT_HEADER} (e.g. {@code gzip, deflate}) gets plaintexts of
+ * at least {@code gateway.compression.threshold} bytes compressed with the first listed codec before boxing, when
+ * that actually makes them smaller. The envelope says so: {@code compression} in the JSON envelope, the codec id in
+ * the {@link BinaryEnvelope} flags.
+ * <p>
+ * Requests: clients may compress uploads the same way; the opened plaintext is inflated with a hard limit of
+ * {@code gateway.compression.max-inflated-size}.
+ */
+@Component
+@Slf4j
+public class PayloadCompression {
+    public static final String ACCEPT_HEADER = "X-Payload-Accept-Encoding";
+
+    private final Map<String, PayloadCodec> byName = new LinkedHashMap<>();
+    private final PayloadCodec[] byId = new PayloadCodec[BinaryEnvelope.CODEC_MASK + 1];
+    private final boolean enabled;
+    private final long threshold;
+    private final long maxInflatedSize;
+
+    public PayloadCompression(List<PayloadCodec> codecs,
+                              @Value("${gateway.compression.enabled:true}") boolean enabled,
+                              @Value("${gateway.compression.threshold:1KB}") DataSize threshold,
+                              @Value("${gateway.compression.max-inflated-size:${gateway.payload.max-request-body-size:10MB}}") DataSize maxInflatedSize) {
+        for (PayloadCodec codec : codecs) {
+            if (codec.id() < 1 || codec.id() > BinaryEnvelope.CODEC_MASK || byId[codec.id()] != null
+                    || byName.containsKey(codec.name())) {
+                throw new IllegalStateException("Payload codec " + codec.name() + " has a duplicate or invalid id " + codec.id());
+            }
+            byId[codec.id()] = codec;
+            byName.put(codec.name(), codec);
+        }
+        this.enabled = enabled;
+        this.threshold = threshold.toBytes();
+        this.maxInflatedSize = maxInflatedSize.toBytes();
+        log.info("Payload compression {}: codecs {}, threshold {} bytes", enabled ? "enabled" : "disabled",
+                byName.keySet(), this.threshold);
+    }
+
+    /**
+     * The first codec the client accepts for responses, or {@code null} for uncompressed responses.
+     */
+    public PayloadCodec negotiate(ServerHttpRequest request) {
+        String accepted = request.getHeaders().getFirst(ACCEPT_HEADER);
+        if (!enabled || !StringUtils.hasText(accepted)) {
+            return null;
+        }
+        for (String name : StringUtils.commaDelimitedListToStringArray(accepted)) {
+            PayloadCodec codec = byName.get(name.trim().toLowerCase(Locale.ROOT));
+            if (codec != null) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compresses {@code content} with {@code codec} when it is large enough and shrinks; otherwise returns it as is
+     * with no codec.
+     */
+    public Compressed compress(PayloadCodec codec, byte[] content) {
+        if (codec == null || content.length < threshold) {
+            return new Compressed(content, null);
+        }
+        byte[] compressed = codec.compress(content);
+        return compressed.length < content.length ? new Compressed(compressed, codec) : new Compressed(content, null);
+    }
+
+    public byte[] decompress(String codecName, byte[] content) {
+        PayloadCodec codec = byName.get(codecName.toLowerCase(Locale.ROOT));
+        if (codec == null) {
+            throw new IllegalArgumentException("Invalid request body: Unsupported compression " + codecName);
+        }
+        return codec.decompress(content, maxInflatedSize);
+    }
+
+    public byte[] decompress(int codecId, byte[] content) {
+        PayloadCodec codec = codecId < byId.length ? byId[codecId] : null;
+        if (codec == null) {
+            throw new IllegalArgumentException("Invalid request body: Unsupported compression id " + codecId);
+        }
+        return codec.decompress(content, maxInflatedSize);
+    }
+
+    /**
+     * Payload to box and the codec it was compressed with, {@code null} when it was left as is.
+     */
+    public record Compressed(byte[] content, PayloadCodec codec) {
+    }
+}
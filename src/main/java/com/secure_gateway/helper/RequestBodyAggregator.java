@@ -0,0 +1,165 @@
+package com.secure_gateway.helper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Aggregates a request body with a hard size limit. Bodies up to the spill threshold are joined in memory; larger
+ * ones are written to a temporary file that is memory-mapped once complete, so the raw envelope is never joined on
+ * the heap and the decryptor parses it from the mapping. This bounds buffering of slow uploads, not decryption:
+ * {@code TweetNaclFast.Box} only opens whole arrays, so the decoded cipher text and the plaintext are still heap
+ * copies of roughly the body's size. The temporary file is unlinked as soon as it is mapped.
+ */
+@Component
+@Slf4j
+public class RequestBodyAggregator {
+
+    /**
+     * Completes with the aggregated body, or empty when the body has no bytes. Fails with
+     * {@link PayloadTooLargeException} as soon as more than {@code maxSize} bytes have been received.
+     */
+    public Mono<DataBuffer> aggregate(Flux<DataBuffer> body, long maxSize, long spillThreshold, DataBufferFactory bufferFactory) {
+        return Mono.using(
+                () -> new Aggregation(maxSize, spillThreshold, bufferFactory),
+                aggregation -> body.concatMap(aggregation::append).then(Mono.defer(aggregation::complete)),
+                Aggregation::close);
+    }
+
+    public static class PayloadTooLargeException extends RuntimeException {
+        public PayloadTooLargeException(long maxSize) {
+            super("Request body exceeds the maximum of " + maxSize + " bytes");
+        }
+    }
+
+    private static class Aggregation {
+        private final long maxSize;
+        private final long spillThreshold;
+        private final DataBufferFactory bufferFactory;
+        private final List<DataBuffer> buffers = new ArrayList<>();
+        private long size;
+        private FileChannel channel;
+
+        Aggregation(long maxSize, long spillThreshold, DataBufferFactory bufferFactory) {
+            this.maxSize = maxSize;
+            this.spillThreshold = spillThreshold;
+            this.bufferFactory = bufferFactory;
+        }
+
+        Mono<Void> append(DataBuffer dataBuffer) {
+            size += dataBuffer.readableByteCount();
+            if (size > maxSize) {
+                DataBufferUtils.release(dataBuffer);
+                return Mono.error(new PayloadTooLargeException(maxSize));
+            }
+            if (channel == null && size <= spillThreshold) {
+                buffers.add(dataBuffer);
+                return Mono.empty();
+            }
+            return Mono.<Void>fromRunnable(() -> spill(dataBuffer))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+
+        Mono<DataBuffer> complete() {
+            if (size == 0) {
+                return Mono.empty();
+            }
+            if (channel == null) {
+                DataBuffer joined = bufferFactory.join(buffers);
+                buffers.clear();
+                return Mono.just(joined);
+            }
+            return Mono.fromCallable(this::map).subscribeOn(Schedulers.boundedElastic());
+        }
+
+        void close() {
+            buffers.forEach(DataBufferUtils::release);
+            buffers.clear();
+            closeChannel();
+        }
+
+        private void spill(DataBuffer dataBuffer) {
+            // Queued first so close() releases it if the file cannot be created or written
+            buffers.add(dataBuffer);
+            try {
+                if (channel == null) {
+                    Path file = Files.createTempFile("gateway-body-", ".tmp");
+                    try {
+                        channel = FileChannel.open(file, READ, WRITE, DELETE_ON_CLOSE);
+                    } catch (IOException | RuntimeException e) {
+                        deleteQuietly(file);
+                        throw e;
+                    }
+                    log.debug("Request body exceeded {} bytes, spilling to {}", spillThreshold, file);
+                }
+                for (Iterator<DataBuffer> queued = buffers.iterator(); queued.hasNext(); ) {
+                    DataBuffer buffer = queued.next();
+                    queued.remove();
+                    write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to spill request body to disk", e);
+            }
+        }
+
+        private static void deleteQuietly(Path file) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete request body spill file {}", file, e);
+            }
+        }
+
+        private void write(DataBuffer dataBuffer) throws IOException {
+            try (DataBuffer.ByteBufferIterator iterator = dataBuffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    ByteBuffer byteBuffer = iterator.next();
+                    while (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer);
+                    }
+                }
+            } finally {
+                DataBufferUtils.release(dataBuffer);
+            }
+        }
+
+        private DataBuffer map() throws IOException {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            closeChannel();
+            return DefaultDataBufferFactory.sharedInstance.wrap(mapped);
+        }
+
+        private void closeChannel() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close request body spill file", e);
+            }
+            channel = null;
+        }
+    }
+}
@@ -1,60 +1,173 @@
 package com.secure_gateway.helper;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.secure_gateway.dto.EncryptedPayloadDTO;
+import com.iwebpp.crypto.TweetNaclFast;
+import com.secure_gateway.audit.AuditCategory;
+import com.secure_gateway.audit.AuditLogger;
 import com.secure_gateway.util.CrytoUtil;
 import jakarta.annotation.PostConstruct;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 import org.springframework.web.server.ServerWebExchange;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Base64;
 
-import static com.m2e.gateway.constant.CryptographyConstant.SECRET_KEY;
 import static com.m2e.gateway.constant.CryptographyConstant.USER_PUBLIC_KEY_BASE64;
 
 @Component
 @Slf4j
 public class RequestDecryptor {
+    private static final String CIPHER_TEXT = "cipherText";
+    private static final String NONCE = "nonce";
+    private static final String PUBLIC_KEY = "publicKey";
+    private static final String KEY_ID = "keyId";
+    private static final String COMPRESSION = "compression";
+
+    /** Scratch buffers above this size are not kept for reuse, so one large upload does not pin a thread's memory. */
+    private static final int MAX_RETAINED_SCRATCH = 1024 * 1024;
+    private static final ThreadLocal<ScratchBuffer> SCRATCH = ThreadLocal.withInitial(() -> new ScratchBuffer(8192));
+
     @Autowired
     @Qualifier("gatewayObjectMapper")
     private ObjectMapper objectMapper;
+    @Autowired
+    private SharedKeyCache sharedKeyCache;
+    @Autowired
+    private KeyRing keyRing;
+    @Autowired
+    private AuditLogger auditLogger;
+    @Autowired
+    private PayloadCompression payloadCompression;
+    @Autowired
+    private NonceReplayDetector nonceReplayDetector;
 
-    public String decryptRequest(byte[] requestBodyBytes, ServerWebExchange exchange) throws Exception {
-        String requestBody = new String(requestBodyBytes, StandardCharsets.UTF_8);
-        EncryptedPayloadDTO encryptedPayload = objectMapper.readValue(requestBody, EncryptedPayloadDTO.class);
+    /**
+     * Parses the envelope straight from the request buffer and returns the plaintext in a buffer allocated from
+     * {@code bufferFactory}, or {@code null} when the envelope carries no cipher text. The envelope is a
+     * {@link BinaryEnvelope} when the request declares its media type, and a JSON {@code EncryptedPayloadDTO}
+     * otherwise. The caller keeps ownership of {@code requestBody}; the returned buffer is owned by the caller as well.
+     */
+    public DataBuffer decryptRequest(DataBuffer requestBody, ServerWebExchange exchange, DataBufferFactory bufferFactory) throws IOException {
+        ScratchBuffer cipherText = SCRATCH.get();
+        cipherText.reset();
+        try {
+            return BinaryEnvelope.isBinary(exchange.getRequest())
+                    ? decryptBinary(requestBody, cipherText, exchange, bufferFactory)
+                    : decryptJson(requestBody, cipherText, exchange, bufferFactory);
+        } finally {
+            if (cipherText.capacity() > MAX_RETAINED_SCRATCH) {
+                SCRATCH.remove();
+            }
+        }
+    }
+
+    private DataBuffer decryptBinary(DataBuffer requestBody, ScratchBuffer cipherText, ServerWebExchange exchange,
+                                     DataBufferFactory bufferFactory) {
+        BinaryEnvelope.Header header = BinaryEnvelope.readHeader(requestBody);
+        cipherText.readFrom(requestBody);
+
+        byte[] plainText = open(cipherText, header.nonce(), header.publicKey(),
+                Base64.getEncoder().encodeToString(header.publicKey()), header.keyId(), exchange);
+        if (header.codecId() != 0) {
+            plainText = payloadCompression.decompress(header.codecId(), plainText);
+        }
+        return toBuffer(plainText, bufferFactory);
+    }
 
-        if (encryptedPayload.getCipherText() == null) {
+    private DataBuffer decryptJson(DataBuffer requestBody, ScratchBuffer cipherText, ServerWebExchange exchange,
+                                   DataBufferFactory bufferFactory) throws IOException {
+        boolean hasCipherText = false;
+        byte[] nonce = null;
+        String publicKey = null;
+        String keyId = null;
+        String compression = null;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(requestBody.asInputStream())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Invalid request body: Expected JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case CIPHER_TEXT -> hasCipherText = parser.readBinaryValue(cipherText) > 0;
+                    case NONCE -> nonce = parser.getBinaryValue();
+                    case PUBLIC_KEY -> publicKey = parser.getText();
+                    case KEY_ID -> keyId = parser.getText();
+                    case COMPRESSION -> compression = parser.getText();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        if (!hasCipherText) {
             return null;
         }
 
-        log.debug("Encrypted request payload: {}",objectMapper.writeValueAsString(encryptedPayload));
-        validateRequestBody(encryptedPayload);
+        validateRequestBody(true, nonce != null && nonce.length > 0, publicKey != null && !publicKey.isBlank());
+
+        byte[] plainText = open(cipherText, nonce, Base64.getDecoder().decode(publicKey), publicKey, keyId, exchange);
+        if (compression != null) {
+            plainText = payloadCompression.decompress(compression, plainText);
+        }
+        return toBuffer(plainText, bufferFactory);
+    }
+
+    private byte[] open(ScratchBuffer cipherText, byte[] nonce, byte[] publicKey, String publicKeyBase64,
+                        String keyId, ServerWebExchange exchange) {
+        GatewayKey gatewayKey = keyRing.get(keyId);
+        if (gatewayKey == null) {
+            log.error("Invalid request body: Unknown or retired key id: {}", keyId);
+            throw new IllegalArgumentException("Invalid request body: Unknown key id");
+        }
+
+        // Checked before opening so replay floods cost a hash lookup instead of a box open. The window only applies
+        // with require-timestamp on; the timestamp is part of the authenticated nonce, so an altered one fails below
+        if (!nonceReplayDetector.isWithinWindow(nonce)) {
+            log.warn("Invalid request body: Expired nonce for key id: {}", gatewayKey.getKeyId());
+            throw new IllegalArgumentException("Invalid request body: Expired nonce");
+        }
+        if (nonceReplayDetector.isReplay(nonce, publicKey)) {
+            log.warn("Invalid request body: Replayed nonce for key id: {}", gatewayKey.getKeyId());
+            throw new IllegalArgumentException("Invalid request body: Replayed nonce");
+        }
 
-        String decryptedPayload = CrytoUtil.decrypt(
-                Base64.getDecoder().decode(encryptedPayload.getCipherText()),
-                Base64.getDecoder().decode(encryptedPayload.getNonce()),
-                Base64.getDecoder().decode(encryptedPayload.getPublicKey()),
-                Base64.getDecoder().decode(exchange.getAttributes().get(SECRET_KEY).toString()));
+        TweetNaclFast.Box box = sharedKeyCache.get(gatewayKey, publicKey);
 
-        log.debug("Decrypted request payload: {}", decryptedPayload);
+        byte[] decryptedPayload = CrytoUtil.open(cipherText.array(), 0, cipherText.size(), nonce, box);
+        if (!nonceReplayDetector.markSeen(nonce, publicKey)) {
+            log.warn("Invalid request body: Replayed nonce for key id: {}", gatewayKey.getKeyId());
+            throw new IllegalArgumentException("Invalid request body: Replayed nonce");
+        }
 
-        exchange.getAttributes().put(USER_PUBLIC_KEY_BASE64, encryptedPayload.getPublicKey());
+        auditLogger.record(AuditCategory.REQUEST_PAYLOAD, "request-decrypted",
+                "keyId", gatewayKey.getKeyId(), "publicKey", publicKeyBase64, "plaintext", decryptedPayload);
+
+        exchange.getAttributes().put(GatewayKey.ATTRIBUTE, gatewayKey);
+        exchange.getAttributes().put(USER_PUBLIC_KEY_BASE64, publicKeyBase64);
         return decryptedPayload;
     }
 
-    @SneakyThrows
-    private void validateRequestBody(EncryptedPayloadDTO payload) {
-        boolean hasCipherText = StringUtils.hasText(payload.getCipherText());
-        boolean hasNonce = StringUtils.hasText(payload.getNonce());
-        boolean hasPublicKey = StringUtils.hasText(payload.getPublicKey());
+    private static DataBuffer toBuffer(byte[] plainText, DataBufferFactory bufferFactory) {
+        return bufferFactory.allocateBuffer(plainText.length).write(plainText);
+    }
 
+    @SneakyThrows
+    private void validateRequestBody(boolean hasCipherText, boolean hasNonce, boolean hasPublicKey) {
         if (!hasCipherText || !hasNonce || !hasPublicKey) {
             log.error("Invalid request body: Missing required fields! cipherText: {}, nonce: {}, publicKey: {}",hasCipherText, hasNonce, hasPublicKey);
             throw new IllegalArgumentException("Invalid request body: Missing required fields");
@@ -65,4 +178,58 @@ public class RequestDecryptor {
     public void postConstruct() {
         objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
-}
\ No newline at end of file
+
+    /**
+     * Growable byte sink that exposes its backing array, used as the Base64 decode target for the cipher text.
+     */
+    private static final class ScratchBuffer extends OutputStream {
+        private byte[] buffer;
+        private int size;
+
+        ScratchBuffer(int initialCapacity) {
+            this.buffer = new byte[initialCapacity];
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(size + 1);
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(size + len);
+            System.arraycopy(b, off, buffer, size, len);
+            size += len;
+        }
+
+        void readFrom(DataBuffer dataBuffer) {
+            int length = dataBuffer.readableByteCount();
+            ensureCapacity(size + length);
+            dataBuffer.read(buffer, size, length);
+            size += length;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        byte[] array() {
+            return buffer;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return buffer.length;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length << 1));
+            }
+        }
+    }
+}
@@ -1,60 +1,125 @@
 package com.secure_gateway.helper;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.secure_gateway.dto.EncryptedPayloadDTO;
-import com.secure_gateway.util.CrytoUtil;
-import lombok.AllArgsConstructor;
+import com.iwebpp.crypto.TweetNaclFast;
+import com.secure_gateway.audit.AuditCategory;
+import com.secure_gateway.audit.AuditLogger;
+import com.secure_gateway.helper.GatewayMetrics.Outcome;
+import com.secure_gateway.helper.GatewayMetrics.Payload;
+import com.secure_gateway.helper.GatewayMetrics.RouteMeters;
+import com.secure_gateway.helper.GatewayMetrics.Stage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
-import static com.m2e.gateway.constant.CryptographyConstant.*;
+import static com.m2e.gateway.constant.CryptographyConstant.USER_PUBLIC_KEY_BASE64;
 
+/**
+ * Encrypts a whole backend response into a single envelope: the body is joined into one buffer up to
+ * {@code gateway.crypto.response.max-body-size}, boxed once and written into an output buffer sized exactly for
+ * the envelope, and Content-Type and Content-Length are set to match it.
+ */
 @Component
 @Slf4j
-@AllArgsConstructor
 public class ResponseEncryptor {
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
-    public Flux<DataBuffer> encryptResponse(Flux<? extends DataBuffer> fluxBody, ServerWebExchange exchange, DataBufferFactory bufferFactory) {
-        return fluxBody.flatMap(dataBuffer -> {
-            byte[] content = new byte[dataBuffer.readableByteCount()];
-            dataBuffer.read(content);
-            DataBufferUtils.release(dataBuffer);
-
-            try {
-                String originalResponse = new String(content, StandardCharsets.UTF_8);
-                String userPublicKeyBase64 = exchange.getAttribute(USER_PUBLIC_KEY_BASE64);
-
-                if (!StringUtils.hasText(userPublicKeyBase64)) {
-                    throw new IllegalStateException("Missing public key in context");
-                }
-
-                EncryptedPayloadDTO encryptedPayload = CrytoUtil.encrypt(
-                        originalResponse,
-                        Base64.getDecoder().decode(userPublicKeyBase64),
-                        Base64.getDecoder().decode(exchange.getAttributes().get(SECRET_KEY).toString()),
-                        Base64.getDecoder().decode(exchange.getAttributes().get(PUBLIC_KEY).toString()));
-
-                String responseJson = objectMapper.writeValueAsString(encryptedPayload);
-                log.info("Encrypted response payload: {}",responseJson);
-
-                byte[] responseBytes = responseJson.getBytes(StandardCharsets.UTF_8);
-                return Mono.just(bufferFactory.wrap(responseBytes));
-
-            } catch (Exception e) {
-                log.error("Response encryption failed", e);
-                return Mono.error(new RuntimeException("Response encryption failed", e));
-            }
-        });
+    private final SharedKeyCache sharedKeyCache;
+    private final CryptoExecutionStage cryptoExecutionStage;
+    private final GatewayMetrics gatewayMetrics;
+    private final AuditLogger auditLogger;
+    private final PayloadCompression payloadCompression;
+    private final int maxBodySize;
+
+    public ResponseEncryptor(SharedKeyCache sharedKeyCache, CryptoExecutionStage cryptoExecutionStage,
+                             GatewayMetrics gatewayMetrics, AuditLogger auditLogger,
+                             PayloadCompression payloadCompression,
+                             @Value("${gateway.crypto.response.max-body-size:10MB}") DataSize maxBodySize) {
+        this.sharedKeyCache = sharedKeyCache;
+        this.cryptoExecutionStage = cryptoExecutionStage;
+        this.gatewayMetrics = gatewayMetrics;
+        this.auditLogger = auditLogger;
+        this.payloadCompression = payloadCompression;
+        this.maxBodySize = (int) Math.min(maxBodySize.toBytes(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Encrypts the whole response body into a single JSON envelope. An empty backend body stays empty.
+     */
+    public Mono<DataBuffer> encryptResponse(Flux<? extends DataBuffer> fluxBody, ServerWebExchange exchange,
+                                            HttpHeaders responseHeaders, DataBufferFactory bufferFactory) {
+        return encrypt(fluxBody, exchange, responseHeaders, MediaType.APPLICATION_JSON,
+                (gatewayKey, codec, nonce, cipherText) -> JsonEnvelope.write(bufferFactory, gatewayKey.getKeyId(),
+                        codec != null ? codec.name() : null, nonce, gatewayKey.getPublicKey(), cipherText));
+    }
+
+    /**
+     * Encrypts the whole response body into a single {@link BinaryEnvelope}. An empty backend body stays empty.
+     */
+    public Mono<DataBuffer> encryptBinaryResponse(Flux<? extends DataBuffer> fluxBody, ServerWebExchange exchange,
+                                                  HttpHeaders responseHeaders, DataBufferFactory bufferFactory) {
+        return encrypt(fluxBody, exchange, responseHeaders, BinaryEnvelope.MEDIA_TYPE,
+                (gatewayKey, codec, nonce, cipherText) -> BinaryEnvelope.write(bufferFactory, gatewayKey.getKeyId(),
+                        codec != null ? codec.id() : 0, nonce, gatewayKey.getPublicKey(), cipherText));
+    }
+
+    private Mono<DataBuffer> encrypt(Flux<? extends DataBuffer> fluxBody, ServerWebExchange exchange,
+                                     HttpHeaders responseHeaders, MediaType contentType, EnvelopeWriter writer) {
+        RouteMeters meters = gatewayMetrics.forExchange(exchange);
+        PayloadCodec codec = payloadCompression.negotiate(exchange.getRequest());
+        return DataBufferUtils.join(fluxBody, maxBodySize)
+                .flatMap(dataBuffer -> cryptoExecutionStage.execute(dataBuffer, () -> {
+                    long encryptStart = System.nanoTime();
+                    byte[] content = new byte[dataBuffer.readableByteCount()];
+                    dataBuffer.read(content);
+                    DataBufferUtils.release(dataBuffer);
+                    meters.recordSize(Payload.RESPONSE_PLAINTEXT, content.length);
+
+                    try {
+                        String userPublicKeyBase64 = exchange.getAttribute(USER_PUBLIC_KEY_BASE64);
+                        if (!StringUtils.hasText(userPublicKeyBase64)) {
+                            throw new IllegalStateException("Missing public key in context");
+                        }
+
+                        GatewayKey gatewayKey = exchange.getRequiredAttribute(GatewayKey.ATTRIBUTE);
+                        TweetNaclFast.Box box = sharedKeyCache.get(gatewayKey, Base64.getDecoder().decode(userPublicKeyBase64));
+                        byte[] nonce = TweetNaclFast.randombytes(TweetNaclFast.Box.nonceLength);
+
+                        PayloadCompression.Compressed plainText = payloadCompression.compress(codec, content);
+                        DataBuffer envelope = writer.write(gatewayKey, plainText.codec(), nonce,
+                                box.box(plainText.content(), nonce));
+                        meters.recordSize(Payload.RESPONSE_CIPHERTEXT, envelope.readableByteCount());
+                        meters.record(Stage.ENCRYPT, Outcome.SUCCESS, encryptStart);
+                        auditLogger.record(AuditCategory.RESPONSE_PAYLOAD, "response-encrypted",
+                                "keyId", gatewayKey.getKeyId(), "plaintext", content,
+                                "ciphertextBytes", envelope.readableByteCount());
+                        return envelope;
+                    } catch (Exception e) {
+                        meters.record(Stage.ENCRYPT, Outcome.ERROR, encryptStart);
+                        log.error("Response encryption failed", e);
+                        throw new RuntimeException("Response encryption failed", e);
+                    }
+                }))
+                .doOnNext(envelope -> {
+                    responseHeaders.setContentType(contentType);
+                    responseHeaders.setContentLength(envelope.readableByteCount());
+                })
+                .doOnError(DataBufferLimitException.class, e ->
+                        log.error("Response body exceeds the maximum of {} bytes", maxBodySize));
+    }
+
+    @FunctionalInterface
+    private interface EnvelopeWriter {
+        DataBuffer write(GatewayKey gatewayKey, PayloadCodec codec, byte[] nonce, byte[] cipherText);
     }
-}
\ No newline at end of file
+}
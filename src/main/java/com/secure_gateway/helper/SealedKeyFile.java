@@ -0,0 +1,173 @@
+package com.secure_gateway.helper;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Local copy of the key ring, sealed with {@code TweetNaclFast.SecretBox} under a key that never touches the database,
+ * so a node can start serving while the database is unreachable.
+ * <p>
+ * The file holds the ring the node last loaded from the database: a random nonce followed by the sealed key list.
+ * It is rewritten atomically whenever the ring changes. Sealing is disabled unless both
+ * {@code gateway.crypto.key-ring.sealed-file.path} and {@code gateway.crypto.key-ring.sealed-file.key} (Base64, 32
+ * bytes) are set.
+ */
+@Component
+@Slf4j
+public class SealedKeyFile {
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final byte[] sealKey;
+
+    public SealedKeyFile(@Value("${gateway.crypto.key-ring.sealed-file.path:}") String path,
+                         @Value("${gateway.crypto.key-ring.sealed-file.key:}") String sealKey) {
+        if (StringUtils.hasText(path) != StringUtils.hasText(sealKey)) {
+            log.warn("Sealed key file needs both a path and a key; it is disabled");
+        }
+        boolean enabled = StringUtils.hasText(path) && StringUtils.hasText(sealKey);
+        this.path = enabled ? Path.of(path) : null;
+        this.sealKey = enabled ? Base64.getDecoder().decode(sealKey) : null;
+        if (enabled && this.sealKey.length != TweetNaclFast.SecretBox.keyLength) {
+            throw new IllegalArgumentException("Sealed key file key must be " + TweetNaclFast.SecretBox.keyLength
+                    + " bytes");
+        }
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    /**
+     * The sealed keys, newest first; empty when sealing is disabled or there is no usable file.
+     */
+    public List<GatewayKey> read() {
+        if (!isEnabled()) {
+            return List.of();
+        }
+
+        byte[] file;
+        try {
+            file = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            log.info("No sealed key file at {}", path);
+            return List.of();
+        } catch (IOException e) {
+            log.error("Unable to read sealed key file {}", path, e);
+            return List.of();
+        }
+
+        int nonceLength = TweetNaclFast.SecretBox.nonceLength;
+        byte[] plainText = file.length > nonceLength
+                ? new TweetNaclFast.SecretBox(sealKey).open(Arrays.copyOfRange(file, nonceLength, file.length),
+                        Arrays.copyOf(file, nonceLength))
+                : null;
+        if (plainText == null) {
+            log.error("Sealed key file {} is truncated or was sealed with a different key", path);
+            return List.of();
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plainText))) {
+            if (in.readInt() != VERSION) {
+                log.error("Sealed key file {} has an unknown version", path);
+                return List.of();
+            }
+            int count = in.readInt();
+            List<GatewayKey> keys = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String keyId = in.readUTF();
+                byte[] publicKey = in.readNBytes(in.readUnsignedShort());
+                byte[] secretKey = in.readNBytes(in.readUnsignedShort());
+                OffsetDateTime createdDate = OffsetDateTime.parse(in.readUTF());
+                keys.add(GatewayKey.of(keyId, publicKey, secretKey, createdDate));
+            }
+            return keys;
+        } catch (IOException | RuntimeException e) {
+            log.error("Sealed key file {} is corrupt", path, e);
+            return List.of();
+        } finally {
+            Arrays.fill(plainText, (byte) 0);
+        }
+    }
+
+    /**
+     * Seals the keys to the file, replacing it atomically. Failures are logged; the file is only a fallback.
+     */
+    public void write(List<GatewayKey> keys) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(VERSION);
+            out.writeInt(keys.size());
+            for (GatewayKey key : keys) {
+                out.writeUTF(key.getKeyId());
+                out.writeShort(key.getPublicKey().length);
+                out.write(key.getPublicKey());
+                out.writeShort(key.getSecretKey().length);
+                out.write(key.getSecretKey());
+                out.writeUTF(key.getCreatedDate().toString());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] plainText = bytes.toByteArray();
+        byte[] nonce = TweetNaclFast.randombytes(TweetNaclFast.SecretBox.nonceLength);
+        byte[] sealed = new TweetNaclFast.SecretBox(sealKey).box(plainText, nonce);
+        Arrays.fill(plainText, (byte) 0);
+
+        byte[] file = new byte[nonce.length + sealed.length];
+        System.arraycopy(nonce, 0, file, 0, nonce.length);
+        System.arraycopy(sealed, 0, file, nonce.length, sealed.length);
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            restrictToOwner(temp);
+            Files.write(temp, file);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Sealed {} gateway keys to {}", keys.size(), path);
+        } catch (IOException e) {
+            log.error("Unable to write sealed key file {}", path, e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Best effort; a stray temp file holds nothing readable without the seal key
+                }
+            }
+        }
+    }
+
+    private static void restrictToOwner(Path file) throws IOException {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Non-POSIX file system; the contents are sealed either way
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.secure_gateway.helper;
+
+import com.m2e.gateway.repository.CorpUserTokenRepository;
+import com.secure_gateway.repository.SessionTokenRepository;
+import com.secure_gateway.repository.SessionTokenRepository.MobileTokenIdView;
+import com.secure_gateway.repository.SessionTokenRepository.TokenIdView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Coalesces session token lookups from concurrent requests into {@code IN (...)} queries.
+ * <p>
+ * The first lookup of a batch opens a window of {@code gateway.session-batch.window}; every lookup arriving in it
+ * joins the batch, which is sent as one query when the window closes or {@code max-size} distinct tokens have
+ * joined, whichever comes first. Identical tokens in a batch share one result. Web and mobile tokens are batched
+ * separately since they are different columns. A token is valid exactly when the single-row lookup would have found
+ * it; a failed query fails every lookup in its batch.
+ * <ul>
+ *     <li>{@code gateway.session.batch.size} (summary): distinct tokens per query, tag {@code type}</li>
+ *     <li>{@code gateway.session.batch.deduplicated} (counter): lookups answered by a token already in the batch</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class SessionTokenBatchLoader {
+    private final CorpUserTokenRepository corpUserTokenRepository;
+    private final BlockingRepositoryExecutor blockingRepositoryExecutor;
+    private final boolean enabled;
+    private final Batcher web;
+    private final Batcher mobile;
+    private final Counter deduplicated;
+
+    public SessionTokenBatchLoader(CorpUserTokenRepository corpUserTokenRepository,
+                                   SessionTokenRepository sessionTokenRepository,
+                                   BlockingRepositoryExecutor blockingRepositoryExecutor,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${gateway.session-batch.enabled:true}") boolean enabled,
+                                   @Value("${gateway.session-batch.window:PT0.002S}") Duration window,
+                                   @Value("${gateway.session-batch.max-size:100}") int maxSize) {
+        this.corpUserTokenRepository = corpUserTokenRepository;
+        this.blockingRepositoryExecutor = blockingRepositoryExecutor;
+        this.enabled = enabled;
+        this.deduplicated = Counter.builder("gateway.session.batch.deduplicated")
+                .description("Session token lookups that joined an identical token already in the batch")
+                .register(meterRegistry);
+        this.web = new Batcher("web", window.toNanos(), maxSize, meterRegistry, tokens ->
+                tokenSet(sessionTokenRepository.findByTokenIdIn(tokens), TokenIdView::getTokenId));
+        this.mobile = new Batcher("mobile", window.toNanos(), maxSize, meterRegistry, tokens ->
+                tokenSet(sessionTokenRepository.findByMobileTokenIdIn(tokens), MobileTokenIdView::getMobileTokenId));
+
+        log.info("Session token batching {}: window {}, max {} tokens per query", enabled ? "enabled" : "disabled",
+                window, maxSize);
+    }
+
+    /**
+     * Whether a session exists for the web or mobile token.
+     */
+    public Mono<Boolean> exists(String token, boolean isWeb) {
+        if (!enabled) {
+            return blockingRepositoryExecutor.execute(() -> (isWeb
+                    ? corpUserTokenRepository.findByTokenId(token)
+                    : corpUserTokenRepository.findByMobileTokenId(token)).isPresent());
+        }
+        return Mono.defer(() -> (isWeb ? web : mobile).load(token));
+    }
+
+    private static <T> Set<String> tokenSet(List<T> rows, Function<T, String> token) {
+        Set<String> tokens = new HashSet<>(rows.size() * 2);
+        for (T row : rows) {
+            tokens.add(token.apply(row));
+        }
+        return tokens;
+    }
+
+    private final class Batcher {
+        private final long windowNanos;
+        private final int maxSize;
+        private final Function<Set<String>, Set<String>> query;
+        private final DistributionSummary batchSize;
+
+        /** Guarded by {@code this}. */
+        private Batch current;
+
+        Batcher(String type, long windowNanos, int maxSize, MeterRegistry meterRegistry,
+                Function<Set<String>, Set<String>> query) {
+            this.windowNanos = windowNanos;
+            this.maxSize = maxSize;
+            this.query = query;
+            this.batchSize = DistributionSummary.builder("gateway.session.batch.size")
+                    .description("Distinct session tokens per batched lookup query")
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+
+        Mono<Boolean> load(String token) {
+            Sinks.One<Boolean> result;
+            Batch full = null;
+            synchronized (this) {
+                if (current == null) {
+                    Batch opened = new Batch();
+                    current = opened;
+                    Schedulers.parallel().schedule(() -> flush(opened), windowNanos, TimeUnit.NANOSECONDS);
+                }
+                result = current.results.get(token);
+                if (result != null) {
+                    deduplicated.increment();
+                } else {
+                    result = Sinks.one();
+                    current.results.put(token, result);
+                    if (current.results.size() >= maxSize) {
+                        full = current;
+                        current = null;
+                    }
+                }
+            }
+            if (full != null) {
+                flush(full);
+            }
+            return result.asMono();
+        }
+
+        private void flush(Batch batch) {
+            synchronized (this) {
+                if (current == batch) {
+                    current = null;
+                }
+            }
+            if (!batch.flushed.compareAndSet(false, true)) {
+                return;
+            }
+
+            // No lookup joins a batch once it has left current, so its map is no longer written to
+            Map<String, Sinks.One<Boolean>> results = batch.results;
+            batchSize.record(results.size());
+            blockingRepositoryExecutor.execute(() -> query.apply(results.keySet()))
+                    .subscribe(found -> results.forEach((token, sink) -> sink.tryEmitValue(found.contains(token))),
+                            error -> {
+                                log.error("Batched session token lookup of {} tokens failed", results.size(), error);
+                                results.values().forEach(sink -> sink.tryEmitError(error));
+                            });
+        }
+    }
+
+    private static final class Batch {
+        private final Map<String, Sinks.One<Boolean>> results = new HashMap<>();
+        private final AtomicBoolean flushed = new AtomicBoolean();
+    }
+}
@@ -0,0 +1,117 @@
+package com.secure_gateway.helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.secure_gateway.dto.JwtClaimsContext;
+import com.secure_gateway.event.SessionInvalidatedEvent;
+import com.secure_gateway.util.TokenUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Near-cache of sessions confirmed by {@code CorpUserTokenRepository}, keyed by platform and token digest.
+ * <p>
+ * Only sessions that exist are cached, and never beyond the token's own expiry, so a hit can only repeat an answer
+ * the repository gave within the TTL. Logout and forced logout go through {@link #invalidate(String)} or
+ * {@link #invalidateAll(boolean)}, which publish a {@link SessionInvalidatedEvent} for this node and, when broadcasting is
+ * enabled, for its peers.
+ */
+@Component
+@Slf4j
+public class SessionValidityCache {
+    private final Cache<String, Instant> cache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SessionValidityCache(MeterRegistry meterRegistry, ApplicationEventPublisher eventPublisher,
+                                @Value("${gateway.session-cache.max-size:100000}") long maxSize,
+                                @Value("${gateway.session-cache.ttl:PT30S}") Duration ttl) {
+        this.eventPublisher = eventPublisher;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new SessionExpiry(ttl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "gateway.session");
+    }
+
+    /**
+     * Completes with {@code true} when the session is cached or {@code loader} confirms it exists.
+     */
+    public Mono<Boolean> isValid(JwtClaimsContext claims, Supplier<Mono<Boolean>> loader) {
+        String key = key(claims.tokenDigest(), claims.web());
+        if (cache.getIfPresent(key) != null) {
+            return Mono.just(true);
+        }
+
+        return loader.get().doOnNext(valid -> {
+            if (valid) {
+                cache.put(key, claims.expiresAt() != null ? claims.expiresAt() : Instant.MAX);
+            }
+        });
+    }
+
+    public void invalidate(String jwtToken) {
+        invalidateDigest(TokenUtil.digest(jwtToken), true);
+    }
+
+    public void invalidateDigest(String tokenDigest, boolean propagate) {
+        eventPublisher.publishEvent(new SessionInvalidatedEvent(tokenDigest, propagate));
+    }
+
+    public void invalidateAll(boolean propagate) {
+        eventPublisher.publishEvent(new SessionInvalidatedEvent(null, propagate));
+    }
+
+    @EventListener
+    public void onSessionInvalidated(SessionInvalidatedEvent event) {
+        if (event.isAll()) {
+            log.info("Invalidating all cached sessions");
+            cache.invalidateAll();
+            return;
+        }
+        log.debug("Invalidating cached session: {}", event.tokenDigest());
+        cache.invalidate(key(event.tokenDigest(), true));
+        cache.invalidate(key(event.tokenDigest(), false));
+    }
+
+    private static String key(String tokenDigest, boolean isWeb) {
+        return (isWeb ? "W:" : "M:") + tokenDigest;
+    }
+
+    private record SessionExpiry(Duration ttl) implements Expiry<String, Instant> {
+
+        @Override
+        public long expireAfterCreate(String key, Instant expiresAt, long currentTime) {
+            if (Instant.MAX.equals(expiresAt)) {
+                return ttl.toNanos();
+            }
+            // Compared as Durations: a far-future expiry overflows toNanos()
+            Duration untilExpiry = Duration.between(Instant.now(), expiresAt);
+            if (untilExpiry.isNegative()) {
+                return 0;
+            }
+            return (untilExpiry.compareTo(ttl) < 0 ? untilExpiry : ttl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Instant expiresAt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, expiresAt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Instant expiresAt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
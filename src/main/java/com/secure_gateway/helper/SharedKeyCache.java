@@ -0,0 +1,61 @@
+package com.secure_gateway.helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iwebpp.crypto.TweetNaclFast;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+/**
+ * Caches precomputed NaCl boxes per (gateway key id, client public key).
+ * <p>
+ * Building a {@link TweetNaclFast.Box} and calling {@link TweetNaclFast.Box#before()} costs a full X25519 scalar
+ * multiplication. The resulting box only reads its shared key afterwards, so one instance can be used concurrently
+ * to open requests and seal responses for the same client.
+ */
+@Component
+@Slf4j
+public class SharedKeyCache {
+    private final Cache<SharedKeyId, TweetNaclFast.Box> cache;
+
+    public SharedKeyCache(MeterRegistry meterRegistry,
+                          @Value("${gateway.crypto.shared-key-cache.max-size:100000}") long maxSize,
+                          @Value("${gateway.crypto.shared-key-cache.ttl:PT30M}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "gateway.crypto.shared-key");
+    }
+
+    /**
+     * Returns the precomputed box for the gateway key and client public key, computing it on a miss.
+     */
+    public TweetNaclFast.Box get(GatewayKey gatewayKey, byte[] theirPublicKey) {
+        if (theirPublicKey == null || theirPublicKey.length != TweetNaclFast.Box.publicKeyLength) {
+            throw new IllegalArgumentException("Invalid client public key length");
+        }
+
+        byte[] publicKey = theirPublicKey.clone();
+        return cache.get(new SharedKeyId(gatewayKey.getKeyId(), ByteBuffer.wrap(publicKey)), id -> {
+            log.debug("Shared key cache miss for key id: {}", gatewayKey.getKeyId());
+            TweetNaclFast.Box box = new TweetNaclFast.Box(publicKey, gatewayKey.getSecretKey());
+            box.before();
+            return box;
+        });
+    }
+
+    public void invalidateKeyId(String keyId) {
+        cache.asMap().keySet().removeIf(id -> id.keyId().equals(keyId));
+    }
+
+    private record SharedKeyId(String keyId, ByteBuffer publicKey) {
+    }
+}
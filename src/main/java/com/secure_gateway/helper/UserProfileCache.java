@@ -0,0 +1,76 @@
+package com.secure_gateway.helper;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.m2e.gateway.dto.QueryUserProfileResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Asynchronous cache of RCAS user profiles keyed by userId.
+ * <p>
+ * Concurrent lookups for the same user share one in-flight call. Users that RCAS does not know are cached as empty
+ * for a shorter TTL; failed calls are not cached, so the next request retries.
+ */
+@Component
+@Slf4j
+public class UserProfileCache {
+    private final AsyncCache<String, Optional<QueryUserProfileResponse>> cache;
+
+    public UserProfileCache(MeterRegistry meterRegistry,
+                            @Value("${gateway.rcas.profile-cache.max-size:50000}") long maxSize,
+                            @Value("${gateway.rcas.profile-cache.ttl:PT30S}") Duration ttl,
+                            @Value("${gateway.rcas.profile-cache.negative-ttl:PT5S}") Duration negativeTtl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new ProfileExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "gateway.rcas.profile");
+    }
+
+    /**
+     * Returns the cached profile, or loads it with {@code loader}. Completes empty when the user does not exist.
+     */
+    public Mono<QueryUserProfileResponse> get(String userId, Function<String, Mono<QueryUserProfileResponse>> loader) {
+        return Mono.fromFuture(() -> cache.get(userId, (key, executor) -> loader.apply(key)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .toFuture()), true)
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    public void invalidate(String userId) {
+        cache.synchronous().invalidate(userId);
+    }
+
+    private record ProfileExpiry(long ttlNanos, long negativeTtlNanos)
+            implements Expiry<String, Optional<QueryUserProfileResponse>> {
+
+        @Override
+        public long expireAfterCreate(String key, Optional<QueryUserProfileResponse> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<QueryUserProfileResponse> value, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<QueryUserProfileResponse> value, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
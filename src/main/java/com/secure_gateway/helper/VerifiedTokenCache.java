@@ -0,0 +1,66 @@
+package com.secure_gateway.helper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.secure_gateway.dto.JwtClaimsContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Claims of tokens whose signature has already been verified, keyed by token digest. An entry never outlives the
+ * token's {@code exp}, so an expired token always goes back through full validation.
+ */
+@Component
+public class VerifiedTokenCache {
+    private final Cache<String, JwtClaimsContext> cache;
+
+    public VerifiedTokenCache(MeterRegistry meterRegistry,
+                              @Value("${gateway.jwt.verified-cache.max-size:100000}") long maxSize,
+                              @Value("${gateway.jwt.verified-cache.ttl:PT5M}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new ClaimsExpiry(ttl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "gateway.jwt.verified");
+    }
+
+    public JwtClaimsContext getIfPresent(String tokenDigest) {
+        return cache.getIfPresent(tokenDigest);
+    }
+
+    public void put(JwtClaimsContext claims) {
+        if (claims.expiresAt() != null) {
+            cache.put(claims.tokenDigest(), claims);
+        }
+    }
+
+    private record ClaimsExpiry(Duration ttl) implements Expiry<String, JwtClaimsContext> {
+
+        @Override
+        public long expireAfterCreate(String key, JwtClaimsContext claims, long currentTime) {
+            // Clamped before converting: toNanos() overflows for expiries more than ~292 years out
+            Duration untilExpiry = Duration.between(Instant.now(), claims.expiresAt());
+            if (untilExpiry.isNegative()) {
+                return 0;
+            }
+            return (untilExpiry.compareTo(ttl) < 0 ? untilExpiry : ttl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtClaimsContext claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtClaimsContext claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.secure_gateway.repository;
+
+import com.m2e.model.sso.base.SecretkeyGenerator;
+
+/**
+ * Insert-only write side of the gateway key table. Unlike {@code save}, which merges an entity whose id is already
+ * set, an insert fails when the id exists, so nodes racing to create the same key cannot overwrite each other.
+ */
+public interface GatewayKeyInserter {
+
+    /**
+     * Inserts the key, failing with a {@link org.springframework.dao.DataIntegrityViolationException} when a key with
+     * the same id already exists.
+     */
+    void insert(SecretkeyGenerator secretkeyGenerator);
+}
@@ -0,0 +1,20 @@
+package com.secure_gateway.repository;
+
+import com.m2e.model.sso.base.SecretkeyGenerator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+class GatewayKeyInserterImpl implements GatewayKeyInserter {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void insert(SecretkeyGenerator secretkeyGenerator) {
+        entityManager.persist(secretkeyGenerator);
+        // Surface a duplicate id here, inside the repository call, rather than at commit
+        entityManager.flush();
+    }
+}
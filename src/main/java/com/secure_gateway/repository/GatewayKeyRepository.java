@@ -0,0 +1,15 @@
+package com.secure_gateway.repository;
+
+import com.m2e.model.sso.base.SecretkeyGenerator;
+import org.springframework.data.repository.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * The gateway key table: reads limited to the keys that can still be in the key ring, and insert-only writes.
+ */
+public interface GatewayKeyRepository extends Repository<SecretkeyGenerator, String>, GatewayKeyInserter {
+
+    List<SecretkeyGenerator> findByCreatedDateAfterOrderByCreatedDateDesc(OffsetDateTime createdDate);
+}
@@ -0,0 +1,26 @@
+package com.secure_gateway.repository;
+
+import com.m2e.model.sso.base.CorpUserToken;
+import org.springframework.data.repository.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Batched existence checks on the session token table. Only the token column is selected, through the projections
+ * below, since callers need nothing but which of the tokens are present.
+ */
+public interface SessionTokenRepository extends Repository<CorpUserToken, String> {
+
+    List<TokenIdView> findByTokenIdIn(Collection<String> tokenIds);
+
+    List<MobileTokenIdView> findByMobileTokenIdIn(Collection<String> mobileTokenIds);
+
+    interface TokenIdView {
+        String getTokenId();
+    }
+
+    interface MobileTokenIdView {
+        String getMobileTokenId();
+    }
+}
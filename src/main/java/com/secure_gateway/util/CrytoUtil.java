@@ -4,13 +4,17 @@ import com.iwebpp.crypto.TweetNaclFast;
 import com.secure_gateway.dto.EncryptedPayloadDTO;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
 @Slf4j
 public class CrytoUtil {
     public static String decrypt(byte[] cipherText, byte[] nonce, byte[] theirPublicKey, byte[] mySecretKey) {
-        TweetNaclFast.Box box = new TweetNaclFast.Box(theirPublicKey, mySecretKey);
+        return decrypt(cipherText, nonce, new TweetNaclFast.Box(theirPublicKey, mySecretKey));
+    }
+
+    public static String decrypt(byte[] cipherText, byte[] nonce, TweetNaclFast.Box box) {
         byte[] decryptedText = box.open(cipherText, nonce);
 
         if (decryptedText == null) {
@@ -21,14 +25,47 @@ public class CrytoUtil {
         return new String(decryptedText, StandardCharsets.UTF_8);
     }
 
+    public static byte[] open(byte[] cipherText, int offset, int length, byte[] nonce, TweetNaclFast.Box box) {
+        byte[] decryptedText = box.open(cipherText, offset, length, nonce);
+
+        if (decryptedText == null) {
+            log.error("Decryption failed: invalid ciphertext or nonce or key");
+            throw new IllegalArgumentException("Decryption failed: invalid ciphertext or nonce or key");
+        }
+
+        return decryptedText;
+    }
+
     public static EncryptedPayloadDTO encrypt(String plainText, byte[] theirPublicKey, byte[] mySecretKey, byte[] myPublicKey) {
-        TweetNaclFast.Box box = new TweetNaclFast.Box(theirPublicKey, mySecretKey);
-        byte[] nonce = TweetNaclFast.randombytes(box.nonceLength);
-        byte[] encryptedText = box.box(plainText.getBytes(StandardCharsets.UTF_8), nonce);
+        return encrypt(plainText, new TweetNaclFast.Box(theirPublicKey, mySecretKey), myPublicKey);
+    }
+
+    public static EncryptedPayloadDTO encrypt(String plainText, TweetNaclFast.Box box, byte[] myPublicKey) {
+        return encrypt(plainText.getBytes(StandardCharsets.UTF_8), box, myPublicKey);
+    }
+
+    public static EncryptedPayloadDTO encrypt(byte[] plainText, TweetNaclFast.Box box, byte[] myPublicKey) {
+        byte[] nonce = newNonce();
+        byte[] encryptedText = box.box(plainText, nonce);
 
         return EncryptedPayloadDTO.builder().cipherText(Base64.getEncoder().encodeToString(encryptedText))
                 .nonce(Base64.getEncoder().encodeToString(nonce))
                 .publicKey(Base64.getEncoder().encodeToString(myPublicKey))
                 .build();
     }
+
+    /**
+     * A request nonce: the current time as big-endian epoch milliseconds followed by random bytes. With
+     * {@code gateway.crypto.replay.require-timestamp} on, the gateway rejects request envelopes whose nonce timestamp
+     * is outside its replay window.
+     */
+    public static byte[] newNonce() {
+        byte[] nonce = TweetNaclFast.randombytes(TweetNaclFast.Box.nonceLength);
+        ByteBuffer.wrap(nonce).putLong(System.currentTimeMillis());
+        return nonce;
+    }
+
+    public static long nonceTimestamp(byte[] nonce) {
+        return ByteBuffer.wrap(nonce).getLong();
+    }
 }
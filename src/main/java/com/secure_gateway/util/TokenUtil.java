@@ -0,0 +1,67 @@
+package com.secure_gateway.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Token helpers used for cache keys. Nothing here verifies a signature, so {@link #expiresAt(String)} is only
+ * meaningful for tokens that {@code JwtUtil} has already validated.
+ */
+@Slf4j
+public class TokenUtil {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private TokenUtil() {
+    }
+
+    /**
+     * Hex SHA-256 of the token, so caches and invalidation messages never hold the raw token.
+     */
+    public static String digest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(messageDigest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Reads the {@code exp} claim from the token payload, or {@code null} when it is absent or unreadable.
+     */
+    public static Instant expiresAt(String token) {
+        int first = token.indexOf('.');
+        int second = token.indexOf('.', first + 1);
+        if (first < 0 || second < 0) {
+            return null;
+        }
+
+        byte[] payload = Base64.getUrlDecoder().decode(token.substring(first + 1, second));
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("exp".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    return Instant.ofEpochSecond(parser.getLongValue());
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read expiry from token payload: {}", e.getMessage());
+        }
+        return null;
+    }
+}
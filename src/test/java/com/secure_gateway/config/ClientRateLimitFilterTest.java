@@ -0,0 +1,89 @@
+package com.secure_gateway.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientRateLimitFilterTest {
+
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final long HOUR = TimeUnit.HOURS.toNanos(1);
+
+    @Test
+    void allowsTheBurstThenReportsTheWaitForTheNextToken() {
+        AtomicLong bucket = new AtomicLong(Long.MIN_VALUE);
+        long burstNanos = INTERVAL * (4 - 1);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, ClientRateLimitFilter.acquire(bucket, INTERVAL, burstNanos), "request " + i);
+        }
+        long wait = ClientRateLimitFilter.acquire(bucket, INTERVAL, burstNanos);
+        assertTrue(wait > 0 && wait <= INTERVAL, "wait " + wait);
+    }
+
+    @Test
+    void rejectedRequestsDoNotConsumeTokens() {
+        AtomicLong bucket = new AtomicLong(Long.MIN_VALUE);
+        assertEquals(0, ClientRateLimitFilter.acquire(bucket, HOUR, 0));
+        long arrival = bucket.get();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ClientRateLimitFilter.acquire(bucket, HOUR, 0) > 0);
+        }
+        assertEquals(arrival, bucket.get());
+    }
+
+    @Test
+    void idleBucketRefillsToTheBurstButNoFurther() {
+        long burstNanos = INTERVAL * (3 - 1);
+        // Last request long ago: the theoretical arrival time is far in the past
+        AtomicLong bucket = new AtomicLong(System.nanoTime() - HOUR);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, ClientRateLimitFilter.acquire(bucket, INTERVAL, burstNanos), "request " + i);
+        }
+        assertTrue(ClientRateLimitFilter.acquire(bucket, INTERVAL, burstNanos) > 0);
+    }
+
+    @Test
+    void concurrentRequestsNeverExceedTheBurst() throws InterruptedException {
+        AtomicLong bucket = new AtomicLong(Long.MIN_VALUE);
+        int burst = 100;
+        long burstNanos = HOUR * (burst - 1);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (ClientRateLimitFilter.acquire(bucket, HOUR, burstNanos) == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(burst, allowed.get());
+    }
+}
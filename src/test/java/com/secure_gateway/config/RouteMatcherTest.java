@@ -0,0 +1,156 @@
+package com.secure_gateway.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteMatcherTest {
+
+    private static final RoutePolicyProperties POLICY = RoutePolicyLoader.load(new ClassPathResource("application.yml"));
+
+    private static final Map<RouteCategory, List<String>> ENTRIES = Map.of(
+            RouteCategory.OPEN, POLICY.getOpenEndpoints(),
+            RouteCategory.DOWNTIME_WHITELIST, POLICY.getDowntimeWhitelistEndpoints(),
+            RouteCategory.TEMPORARY, POLICY.getTemporaryEndpoints(),
+            RouteCategory.PRE_2FA, POLICY.getPre2faEndpoints());
+
+    private final RouteMatcher routeMatcher = new RouteMatcher(ENTRIES);
+
+    @Test
+    void loadsPolicyFromConfiguration() {
+        assertFalse(POLICY.getOpenEndpoints().isEmpty());
+        assertFalse(POLICY.getPre2faEndpoints().isEmpty());
+    }
+
+    @Test
+    void classifiesKnownPaths() {
+        assertFalse(routeMatcher.classify("/auth/v1/login").isSecured());
+        assertFalse(routeMatcher.classify("/gateway/common/v1/publickey").isSecured());
+        assertTrue(routeMatcher.classify("/account/v1/summary").isSecured());
+        assertTrue(routeMatcher.classify("/auth/v1/loginWithQuestion").is(RouteCategory.TEMPORARY));
+        assertTrue(routeMatcher.classify("/portal/v1/change-password").is(RouteCategory.PRE_2FA));
+        assertFalse(routeMatcher.classify("/portal/v1/change-password/confirm").is(RouteCategory.PRE_2FA));
+        assertTrue(routeMatcher.classify("/x/prelogin/announcements/1").is(RouteCategory.DOWNTIME_WHITELIST));
+    }
+
+    @Test
+    void handlesOverlappingEntriesAndNonAsciiPaths() {
+        RouteMatcher overlapping = new RouteMatcher(Map.of(
+                RouteCategory.OPEN, List.of("abcd", "bc"),
+                RouteCategory.PRE_2FA, List.of("cd", "bcd")));
+
+        assertTrue(overlapping.classify("xabcd").is(RouteCategory.OPEN));
+        assertTrue(overlapping.classify("xabcd").is(RouteCategory.PRE_2FA));
+        assertTrue(overlapping.classify("abcx").is(RouteCategory.OPEN));
+        assertFalse(overlapping.classify("abcdx").is(RouteCategory.PRE_2FA));
+        assertFalse(overlapping.classify("abécd").is(RouteCategory.OPEN));
+        assertTrue(overlapping.classify("abécd").is(RouteCategory.PRE_2FA));
+        assertFalse(overlapping.classify("").is(RouteCategory.OPEN));
+    }
+
+    @Test
+    void matchesNaiveSemanticsOnGeneratedPaths() {
+        List<String> fragments = new ArrayList<>();
+        ENTRIES.values().forEach(fragments::addAll);
+        fragments.addAll(List.of("/", "v1", "/api/", "common", "secret", "x", "-", "ü"));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder path = new StringBuilder();
+            int parts = random.nextInt(4);
+            for (int j = 0; j < parts; j++) {
+                String fragment = fragments.get(random.nextInt(fragments.size()));
+                int from = random.nextInt(fragment.length());
+                int to = from + random.nextInt(fragment.length() - from) + 1;
+                path.append(random.nextBoolean() ? fragment : fragment.substring(from, to));
+            }
+            assertMatchesNaive(path.toString());
+        }
+    }
+
+    @Test
+    void routerValidatorPredicatesKeepTheirSemantics() throws IOException {
+        RoutePolicyLoader loader = new RoutePolicyLoader(new StandardEnvironment(),
+                new ClassPathResource("application.yml").getFile().getPath());
+        RouterValidator routerValidator = new RouterValidator(loader, 100);
+        List<String> paths = new ArrayList<>();
+        ENTRIES.values().forEach(entries -> entries.forEach(entry -> {
+            paths.add(entry);
+            paths.add("/prefix" + entry);
+            paths.add(entry + "/suffix");
+        }));
+        paths.add("/account/v1/summary");
+
+        for (String path : paths) {
+            assertEquals(naive(POLICY.getOpenEndpoints(), path::contains, false),
+                    routerValidator.isSecured.test(path), path);
+            assertEquals(naive(POLICY.getDowntimeWhitelistEndpoints(), path::contains, false),
+                    routerValidator.isBypassDowntime.test(path), path);
+            assertEquals(naive(POLICY.getTemporaryEndpoints(), path::contains, true),
+                    routerValidator.isTemporary.test(path), path);
+            assertEquals(naive(POLICY.getPre2faEndpoints(), path::endsWith, true),
+                    routerValidator.is2FA.test(path), path);
+        }
+    }
+
+    @Test
+    void reloadKeepsPreviousSnapshotWhenTablesAreInvalid(@TempDir Path directory) throws IOException {
+        Path policy = directory.resolve("route-policy.yml");
+        Files.writeString(policy, """
+                gateway:
+                  route-policy:
+                    open-endpoints:
+                      - "/auth/v1/login"
+                """);
+        RouterValidator routerValidator = new RouterValidator(
+                new RoutePolicyLoader(new StandardEnvironment(), policy.toString()), 100);
+        RoutePolicySnapshot loaded = routerValidator.getSnapshot();
+
+        Files.writeString(policy, "");
+        assertThrows(IllegalStateException.class, routerValidator::reload);
+        Files.writeString(policy, """
+                gateway:
+                  route-policy:
+                    open-endpoints:
+                      - "/auth/v1/login"
+                      - ""
+                """);
+        assertThrows(IllegalStateException.class, routerValidator::reload);
+        Files.writeString(policy, "gateway: [");
+        assertThrows(RuntimeException.class, routerValidator::reload);
+
+        assertSame(loaded, routerValidator.getSnapshot());
+        assertFalse(routerValidator.isSecured.test("/auth/v1/login"));
+        assertTrue(routerValidator.isSecured.test("/account/v1/summary"));
+    }
+
+    private void assertMatchesNaive(String path) {
+        RouteClassification classification = routeMatcher.classify(path);
+        ENTRIES.forEach((category, entries) -> {
+            Predicate<String> matches = category.matchMode() == RouteCategory.MatchMode.SUFFIX
+                    ? path::endsWith
+                    : path::contains;
+            assertEquals(naive(entries, matches, true), classification.is(category), category + " " + path);
+        });
+    }
+
+    private static boolean naive(List<String> entries, Predicate<String> matches, boolean anyMatch) {
+        return anyMatch ? entries.stream().anyMatch(matches) : entries.stream().noneMatch(matches);
+    }
+}
@@ -0,0 +1,114 @@
+package com.secure_gateway.helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void noPermitOnceTheLimitIsInFlight() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(3, 1, 10, 2.0, 0.9, Long.MAX_VALUE / 2);
+
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter, 3);
+        assertNull(limiter.tryAcquire());
+        assertEquals(3, limiter.getInFlight());
+
+        permits.get(0).release();
+        assertNotNull(limiter.tryAcquire());
+    }
+
+    @Test
+    void releasingIsIdempotent() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(3, 1, 10, 2.0, 0.9, Long.MAX_VALUE / 2);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        limiter.tryAcquire();
+
+        permit.release();
+        permit.drop();
+        permit.ignore();
+
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void initialLimitIsClampedAndBoundsAreValidated() {
+        assertEquals(10, new AdaptiveConcurrencyLimiter(50, 1, 10, 2.0, 0.9, WINDOW).getLimit());
+        assertEquals(5, new AdaptiveConcurrencyLimiter(1, 5, 10, 2.0, 0.9, WINDOW).getLimit());
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(5, 0, 10, 2.0, 0.9, WINDOW));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(5, 6, 5, 2.0, 0.9, WINDOW));
+    }
+
+    @Test
+    void droppedPermitsBackOffDownToTheMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(100, 4, 100, 2.0, 0.5, 0);
+
+        limiter.tryAcquire().drop();
+        assertEquals(50, limiter.getLimit());
+
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire().drop();
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void limitGrowsWhileFullyUsedAndLatencyHolds() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 1000, 2.0, 0.9, WINDOW);
+
+        for (int round = 0; round < 30; round++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter, limiter.getLimit());
+            Thread.sleep(2);
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::release);
+        }
+
+        assertTrue(limiter.getLimit() > 20, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void limitDoesNotGrowWhileMostlyIdle() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 1000, 2.0, 0.9, WINDOW);
+
+        for (int round = 0; round < 30; round++) {
+            for (int i = 0; i < 20; i++) {
+                limiter.tryAcquire().release();
+            }
+            Thread.sleep(2);
+        }
+        limiter.tryAcquire().release();
+
+        assertTrue(limiter.getLimit() <= 10, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void ignoredPermitsNeitherSampleNorBackOff() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 2.0, 0.5, 0);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire().ignore();
+        }
+
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static List<AdaptiveConcurrencyLimiter.Permit> acquire(AdaptiveConcurrencyLimiter limiter, int count) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+            assertNotNull(permit, "permit " + i);
+            permits.add(permit);
+        }
+        return permits;
+    }
+}
@@ -0,0 +1,115 @@
+package com.secure_gateway.helper;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryEnvelopeTest {
+
+    private final byte[] nonce = TweetNaclFast.randombytes(TweetNaclFast.Box.nonceLength);
+    private final byte[] publicKey = TweetNaclFast.randombytes(TweetNaclFast.Box.publicKeyLength);
+    private final byte[] cipherText = TweetNaclFast.randombytes(TweetNaclFast.Box.overheadLength + 10);
+
+    @Test
+    void headerRoundTripsAndLeavesTheBufferAtTheCipherText() {
+        DataBuffer envelope = BinaryEnvelope.write(DefaultDataBufferFactory.sharedInstance, "key-1", 2, nonce,
+                publicKey, cipherText);
+        assertEquals(3 + "key-1".length() + nonce.length + publicKey.length + cipherText.length,
+                envelope.readableByteCount());
+
+        BinaryEnvelope.Header header = BinaryEnvelope.readHeader(envelope);
+
+        assertEquals("key-1", header.keyId());
+        assertEquals(2, header.codecId());
+        assertArrayEquals(nonce, header.nonce());
+        assertArrayEquals(publicKey, header.publicKey());
+        byte[] rest = new byte[envelope.readableByteCount()];
+        envelope.read(rest);
+        assertArrayEquals(cipherText, rest);
+    }
+
+    @Test
+    void missingKeyIdMeansTheCurrentKey() {
+        DataBuffer envelope = BinaryEnvelope.write(DefaultDataBufferFactory.sharedInstance, null, 0, nonce,
+                publicKey, cipherText);
+
+        BinaryEnvelope.Header header = BinaryEnvelope.readHeader(envelope);
+
+        assertNull(header.keyId());
+        assertEquals(0, header.codecId());
+    }
+
+    @Test
+    void rejectsUnknownVersionAndReservedFlags() {
+        byte[] envelope = bytes(BinaryEnvelope.write(DefaultDataBufferFactory.sharedInstance, null, 0, nonce,
+                publicKey, cipherText));
+
+        byte[] badVersion = envelope.clone();
+        badVersion[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> BinaryEnvelope.readHeader(wrap(badVersion)));
+
+        byte[] reservedFlag = envelope.clone();
+        reservedFlag[1] = 0x04;
+        assertThrows(IllegalArgumentException.class, () -> BinaryEnvelope.readHeader(wrap(reservedFlag)));
+    }
+
+    @Test
+    void rejectsTruncatedEnvelopes() {
+        byte[] envelope = bytes(BinaryEnvelope.write(DefaultDataBufferFactory.sharedInstance, "key-1", 0, nonce,
+                publicKey, cipherText));
+        int minimum = envelope.length - cipherText.length + TweetNaclFast.Box.overheadLength;
+
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryEnvelope.readHeader(wrap(Arrays.copyOf(envelope, 2))));
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryEnvelope.readHeader(wrap(Arrays.copyOf(envelope, minimum - 1))));
+        BinaryEnvelope.readHeader(wrap(Arrays.copyOf(envelope, minimum)));
+    }
+
+    @Test
+    void rejectsKeyIdsLongerThanTheLengthByte() {
+        String keyId = "k".repeat(256);
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryEnvelope.write(
+                DefaultDataBufferFactory.sharedInstance, keyId, 0, nonce, publicKey, cipherText));
+    }
+
+    @Test
+    void negotiatesOnContentTypeAndAccept() {
+        MockServerHttpRequest binary = MockServerHttpRequest.post("/")
+                .contentType(BinaryEnvelope.MEDIA_TYPE)
+                .accept(MediaType.APPLICATION_JSON, BinaryEnvelope.MEDIA_TYPE)
+                .build();
+        MockServerHttpRequest json = MockServerHttpRequest.post("/")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .build();
+
+        assertTrue(BinaryEnvelope.isBinary(binary));
+        assertTrue(BinaryEnvelope.isAccepted(binary));
+        assertFalse(BinaryEnvelope.isBinary(json));
+        assertFalse(BinaryEnvelope.isAccepted(json));
+    }
+
+    private static DataBuffer wrap(byte[] bytes) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(bytes);
+    }
+
+    private static byte[] bytes(DataBuffer dataBuffer) {
+        byte[] bytes = new byte[dataBuffer.readableByteCount()];
+        dataBuffer.read(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,60 @@
+package com.secure_gateway.helper;
+
+import com.secure_gateway.helper.RequestBodyAggregator.PayloadTooLargeException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeflatePayloadCodecTest {
+
+    private final DeflatePayloadCodec codec = new DeflatePayloadCodec(6);
+    private final byte[] payload = GzipPayloadCodecTest.payload(100_000);
+
+    @Test
+    void interoperatesWithTheJdkZlibStreams() throws IOException {
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(codec.compress(payload)))) {
+            assertArrayEquals(payload, in.readAllBytes());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(payload);
+        }
+        assertArrayEquals(payload, codec.decompress(bytes.toByteArray(), Long.MAX_VALUE));
+    }
+
+    @Test
+    void rejectsMalformedStreams() {
+        byte[] compressed = codec.compress(payload);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decompress(Arrays.copyOf(compressed, compressed.length / 2), Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> codec.decompress(payload, Long.MAX_VALUE));
+    }
+
+    @Test
+    void inflateStopsAtTheLimit() {
+        byte[] bomb = codec.compress(new byte[10 * 1024 * 1024]);
+
+        assertThrows(PayloadTooLargeException.class, () -> codec.decompress(bomb, 1024 * 1024));
+        assertEquals(10 * 1024 * 1024, codec.decompress(bomb, 10 * 1024 * 1024).length);
+    }
+
+    @Test
+    void reusedStateIsResetAfterAFailure() {
+        byte[] compressed = codec.compress(payload);
+        assertThrows(PayloadTooLargeException.class, () -> codec.decompress(compressed, 10));
+
+        assertArrayEquals(payload, codec.decompress(compressed, Long.MAX_VALUE));
+        assertArrayEquals(compressed, codec.compress(payload));
+    }
+}
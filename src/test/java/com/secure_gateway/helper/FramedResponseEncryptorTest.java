@@ -0,0 +1,185 @@
+package com.secure_gateway.helper;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static com.m2e.gateway.constant.CryptographyConstant.USER_PUBLIC_KEY_BASE64;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+class FramedResponseEncryptorTest {
+
+    private static final int FRAME_SIZE = 16;
+
+    private final TweetNaclFast.Box.KeyPair gatewayKeyPair = TweetNaclFast.Box.keyPair();
+    private final TweetNaclFast.Box.KeyPair clientKeyPair = TweetNaclFast.Box.keyPair();
+    private final GatewayKey gatewayKey = GatewayKey.of("test-key", gatewayKeyPair.getPublicKey(),
+            gatewayKeyPair.getSecretKey(), OffsetDateTime.now());
+
+    @Test
+    void framesOpenBackToTheBodyWithOnlyTheLastOneFinal() {
+        byte[] body = "a response body long enough to span several frames of sixteen bytes"
+                .getBytes(StandardCharsets.UTF_8);
+        HttpHeaders headers = new HttpHeaders();
+
+        List<DataBuffer> frames = encryptor(new SharedKeyCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1)))
+                .encryptResponse(chunks(body, 10, 40), exchange(), headers, DefaultDataBufferFactory.sharedInstance)
+                .collectList()
+                .block();
+
+        assertNotNull(frames);
+        assertEquals(FramedResponseEncryptor.MODE_FRAMED, headers.getFirst(FramedResponseEncryptor.MODE_HEADER));
+        assertEquals(gatewayKey.getKeyId(), headers.getFirst(FramedResponseEncryptor.KEY_ID_HEADER));
+        byte[] baseNonce = Base64.getDecoder().decode(headers.getFirst(FramedResponseEncryptor.NONCE_HEADER));
+        assertArrayEquals(body, open(frames, baseNonce));
+    }
+
+    @Test
+    void emptyBodyYieldsASingleFinalFrame() {
+        HttpHeaders headers = new HttpHeaders();
+
+        List<DataBuffer> frames = encryptor(new SharedKeyCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1)))
+                .encryptResponse(Flux.empty(), exchange(), headers, DefaultDataBufferFactory.sharedInstance)
+                .collectList()
+                .block();
+
+        assertNotNull(frames);
+        assertEquals(1, frames.size());
+        byte[] baseNonce = Base64.getDecoder().decode(headers.getFirst(FramedResponseEncryptor.NONCE_HEADER));
+        assertArrayEquals(new byte[0], open(frames, baseNonce));
+    }
+
+    @Test
+    void framesSealedBeforeAFailureAreReleased() {
+        TweetNaclFast.Box box = spy(new TweetNaclFast.Box(clientKeyPair.getPublicKey(), gatewayKeyPair.getSecretKey()));
+        doCallRealMethod().doCallRealMethod().doThrow(new IllegalStateException("seal failed"))
+                .when(box).box(any(byte[].class), any(byte[].class));
+        SharedKeyCache sharedKeyCache = mock(SharedKeyCache.class);
+        when(sharedKeyCache.get(any(), any())).thenReturn(box);
+        TrackingBufferFactory bufferFactory = new TrackingBufferFactory();
+
+        Flux<DataBuffer> frames = encryptor(sharedKeyCache)
+                .encryptResponse(chunks(new byte[FRAME_SIZE * 4]), exchange(), new HttpHeaders(), bufferFactory);
+
+        assertThrows(IllegalStateException.class, frames::blockLast);
+        assertEquals(2, bufferFactory.allocated.size());
+        for (NettyDataBuffer frame : bufferFactory.allocated) {
+            assertEquals(0, frame.getNativeBuffer().refCnt());
+        }
+    }
+
+    @Test
+    void frameNonceAddsTheCounterWithCarry() {
+        byte[] baseNonce = new byte[TweetNaclFast.Box.nonceLength];
+        Arrays.fill(baseNonce, baseNonce.length - 2, baseNonce.length, (byte) 0xFF);
+
+        byte[] nonce = FramedResponseEncryptor.frameNonce(baseNonce, 1);
+
+        assertEquals(1, nonce[nonce.length - 3]);
+        assertEquals(0, nonce[nonce.length - 2]);
+        assertEquals(0, nonce[nonce.length - 1]);
+        assertArrayEquals(baseNonce, FramedResponseEncryptor.frameNonce(baseNonce, 0));
+    }
+
+    private FramedResponseEncryptor encryptor(SharedKeyCache sharedKeyCache) {
+        CryptoExecutionStage inline = new CryptoExecutionStage(new SimpleMeterRegistry(), DataSize.ofGigabytes(1), 1, 1);
+        return new FramedResponseEncryptor(sharedKeyCache, inline, new GatewayMetrics(new SimpleMeterRegistry()),
+                DataSize.ofBytes(FRAME_SIZE));
+    }
+
+    private MockServerWebExchange exchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+        exchange.getAttributes().put(USER_PUBLIC_KEY_BASE64,
+                Base64.getEncoder().encodeToString(clientKeyPair.getPublicKey()));
+        exchange.getAttributes().put(GatewayKey.ATTRIBUTE, gatewayKey);
+        return exchange;
+    }
+
+    /**
+     * Splits {@code body} into buffers at the given offsets.
+     */
+    private static Flux<DataBuffer> chunks(byte[] body, int... splits) {
+        List<DataBuffer> buffers = new ArrayList<>();
+        int from = 0;
+        for (int to : splits) {
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(body, from, to)));
+            from = to;
+        }
+        buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(body, from, body.length)));
+        return Flux.fromIterable(buffers);
+    }
+
+    /**
+     * Opens the frames the way a client does, checking that the final flag is set on the last frame only.
+     */
+    private byte[] open(List<DataBuffer> frames, byte[] baseNonce) {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        for (DataBuffer frame : frames) {
+            byte[] bytes = new byte[frame.readableByteCount()];
+            frame.read(bytes);
+            wire.writeBytes(bytes);
+        }
+
+        TweetNaclFast.Box box = new TweetNaclFast.Box(gatewayKeyPair.getPublicKey(), clientKeyPair.getSecretKey());
+        ByteBuffer in = ByteBuffer.wrap(wire.toByteArray());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        long counter = 0;
+        boolean finished = false;
+        while (in.hasRemaining()) {
+            assertFalse(finished, "frame after the final frame");
+            byte[] cipherText = new byte[in.getInt()];
+            in.get(cipherText);
+            byte[] flagged = box.open(cipherText, FramedResponseEncryptor.frameNonce(baseNonce, counter++));
+            assertNotNull(flagged, "frame " + (counter - 1) + " failed to open");
+            finished = flagged[0] == 1;
+            body.write(flagged, 1, flagged.length - 1);
+        }
+        assertTrue(finished, "missing final frame");
+        return body.toByteArray();
+    }
+
+    private static final class TrackingBufferFactory extends NettyDataBufferFactory {
+        private final List<NettyDataBuffer> allocated = new ArrayList<>();
+
+        TrackingBufferFactory() {
+            super(UnpooledByteBufAllocator.DEFAULT);
+        }
+
+        @Override
+        public NettyDataBuffer allocateBuffer(int initialCapacity) {
+            NettyDataBuffer buffer = super.allocateBuffer(initialCapacity);
+            allocated.add(buffer);
+            return buffer;
+        }
+    }
+}
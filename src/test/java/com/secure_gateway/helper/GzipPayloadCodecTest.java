@@ -0,0 +1,119 @@
+package com.secure_gateway.helper;
+
+import com.secure_gateway.helper.RequestBodyAggregator.PayloadTooLargeException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GzipPayloadCodecTest {
+
+    private final GzipPayloadCodec codec = new GzipPayloadCodec(6);
+    private final byte[] payload = payload(100_000);
+
+    @Test
+    void outputIsReadableByGzipInputStream() throws IOException {
+        byte[] compressed = codec.compress(payload);
+
+        assertEquals(0x1f, compressed[0] & 0xff);
+        assertEquals(0x8b, compressed[1] & 0xff);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(payload, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void readsGzipOutputStreamOutput() throws IOException {
+        assertArrayEquals(payload, codec.decompress(jdkGzip(payload), Long.MAX_VALUE));
+        assertArrayEquals(new byte[0], codec.decompress(jdkGzip(new byte[0]), Long.MAX_VALUE));
+    }
+
+    @Test
+    void skipsOptionalHeaderFields() throws IOException {
+        byte[] jdk = jdkGzip(payload);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        // FHCRC | FEXTRA | FNAME | FCOMMENT
+        stream.write(new byte[]{0x1f, (byte) 0x8b, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, (byte) 0xff});
+        stream.write(new byte[]{3, 0, 'x', 'y', 'z'});
+        stream.write("payload.json\0".getBytes(StandardCharsets.US_ASCII));
+        stream.write("comment\0".getBytes(StandardCharsets.US_ASCII));
+        stream.write(new byte[]{0, 0});
+        stream.write(jdk, 10, jdk.length - 10);
+
+        assertArrayEquals(payload, codec.decompress(stream.toByteArray(), Long.MAX_VALUE));
+    }
+
+    @Test
+    void rejectsBadChecksumAndLength() {
+        byte[] compressed = codec.compress(payload);
+
+        byte[] badCrc = compressed.clone();
+        badCrc[badCrc.length - 8] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> codec.decompress(badCrc, Long.MAX_VALUE));
+
+        byte[] badLength = compressed.clone();
+        badLength[badLength.length - 4] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> codec.decompress(badLength, Long.MAX_VALUE));
+    }
+
+    @Test
+    void rejectsMalformedStreams() {
+        byte[] compressed = codec.compress(payload);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decompress(Arrays.copyOf(compressed, compressed.length - 8), Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decompress(Arrays.copyOf(compressed, compressed.length / 2), Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> codec.decompress(payload, Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> codec.decompress(new byte[3], Long.MAX_VALUE));
+    }
+
+    @Test
+    void inflateStopsAtTheLimit() {
+        byte[] bomb = codec.compress(new byte[10 * 1024 * 1024]);
+
+        assertThrows(PayloadTooLargeException.class, () -> codec.decompress(bomb, 1024 * 1024));
+        assertEquals(10 * 1024 * 1024, codec.decompress(bomb, 10 * 1024 * 1024).length);
+    }
+
+    @Test
+    void reusedStateIsResetAfterAFailure() {
+        byte[] compressed = codec.compress(payload);
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decompress(Arrays.copyOf(compressed, compressed.length / 2), Long.MAX_VALUE));
+
+        assertArrayEquals(payload, codec.decompress(compressed, Long.MAX_VALUE));
+        assertArrayEquals(compressed, codec.compress(payload));
+    }
+
+    private static byte[] jdkGzip(byte[] input) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(input);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Compressible but not trivial: words drawn from a small vocabulary.
+     */
+    static byte[] payload(int size) {
+        String[] words = {"gateway", "nonce", "cipher", "session", "token", "route", "{", "}", ":", ","};
+        Random random = new Random(size);
+        StringBuilder builder = new StringBuilder(size);
+        while (builder.length() < size) {
+            builder.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return builder.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+}
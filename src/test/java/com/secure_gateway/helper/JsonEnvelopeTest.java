@@ -0,0 +1,68 @@
+package com.secure_gateway.helper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iwebpp.crypto.TweetNaclFast;
+import com.secure_gateway.config.CryptographyConfig;
+import com.secure_gateway.dto.EncryptedPayloadDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonEnvelopeTest {
+
+    private final ObjectMapper objectMapper = new CryptographyConfig().objectMapper();
+    private final byte[] nonce = TweetNaclFast.randombytes(TweetNaclFast.Box.nonceLength);
+    private final byte[] publicKey = TweetNaclFast.randombytes(TweetNaclFast.Box.publicKeyLength);
+
+    @Test
+    void matchesJacksonForEveryBase64PaddingLength() throws Exception {
+        for (int length = 16; length < 19; length++) {
+            byte[] cipherText = TweetNaclFast.randombytes(length);
+            assertSameDocument("key-1", null, cipherText);
+            assertSameDocument("key-1", "gzip", cipherText);
+        }
+    }
+
+    @Test
+    void escapesKeyIdLikeJackson() throws Exception {
+        assertSameDocument("k\"e\\y\u0001-é", "deflate", TweetNaclFast.randombytes(40));
+    }
+
+    @Test
+    void matchesJacksonForALargeCipherText() throws Exception {
+        assertSameDocument("key-1", null, TweetNaclFast.randombytes(256 * 1024 + 1));
+    }
+
+    @Test
+    void base64LengthIncludesPadding() {
+        for (int length = 0; length < 10; length++) {
+            assertEquals(Base64.getEncoder().encodeToString(new byte[length]).length(),
+                    JsonEnvelope.base64Length(length));
+        }
+    }
+
+    private void assertSameDocument(String keyId, String compression, byte[] cipherText) throws Exception {
+        EncryptedPayloadDTO dto = EncryptedPayloadDTO.builder()
+                .cipherText(Base64.getEncoder().encodeToString(cipherText))
+                .publicKey(Base64.getEncoder().encodeToString(publicKey))
+                .nonce(Base64.getEncoder().encodeToString(nonce))
+                .keyId(keyId)
+                .compression(compression)
+                .build();
+        byte[] expected = objectMapper.writeValueAsBytes(dto);
+
+        DataBuffer envelope = JsonEnvelope.write(DefaultDataBufferFactory.sharedInstance, keyId, compression, nonce,
+                publicKey, cipherText);
+        // Sized exactly: nothing left over in the allocation
+        assertEquals(envelope.capacity(), envelope.readableByteCount());
+        byte[] actual = new byte[envelope.readableByteCount()];
+        envelope.read(actual);
+
+        assertArrayEquals(expected, actual, () -> new String(actual));
+    }
+}
@@ -0,0 +1,115 @@
+package com.secure_gateway.helper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KeyProvisionerTest {
+
+    private static final Duration BACKOFF = Duration.ofMillis(10);
+
+    private final KeyRing keyRing = mock(KeyRing.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final KeyProvisioner provisioner = new KeyProvisioner(keyRing, meterRegistry, BACKOFF, BACKOFF,
+            Duration.ofMinutes(1));
+
+    @AfterEach
+    void stop() {
+        provisioner.stop();
+    }
+
+    @Test
+    void servesTheSealedFileUntilTheDatabaseLoads() {
+        IllegalStateException failure = new IllegalStateException("database down");
+        doThrow(failure).doThrow(failure).doThrow(failure).doNothing().when(keyRing).refresh();
+        when(keyRing.loadSealed()).thenReturn(true);
+
+        provisioner.start();
+
+        await(() -> provisioner.getSource() == KeyProvisioner.Source.DATABASE);
+        verify(keyRing, times(4)).refresh();
+        // Only the first failure falls back; later ones keep serving what was loaded
+        verify(keyRing, times(1)).loadSealed();
+        assertEquals(3, provisioner.getFailedAttempts());
+        assertNull(provisioner.getLastError());
+        assertEquals(0, meterRegistry.get("gateway.keys.sealed-fallback").gauge().value());
+        assertFalse(Double.isNaN(meterRegistry.get("gateway.startup.ready-time").timeGauge().value()));
+    }
+
+    @Test
+    void reportsTheSealedFallbackWhileTheDatabaseIsDown() {
+        doThrow(new IllegalStateException("database down")).when(keyRing).refresh();
+        when(keyRing.loadSealed()).thenReturn(true);
+
+        provisioner.start();
+
+        await(() -> provisioner.getFailedAttempts() >= 2);
+        assertEquals(KeyProvisioner.Source.SEALED_FILE, provisioner.getSource());
+        assertEquals(1, meterRegistry.get("gateway.keys.sealed-fallback").gauge().value());
+        assertTrue(provisioner.getLastError() instanceof IllegalStateException);
+    }
+
+    @Test
+    void staysUnreadyWithoutASealedFile() {
+        doThrow(new IllegalStateException("database down")).when(keyRing).refresh();
+        when(keyRing.loadSealed()).thenReturn(false);
+
+        provisioner.start();
+
+        await(() -> provisioner.getFailedAttempts() >= 3);
+        assertEquals(KeyProvisioner.Source.NONE, provisioner.getSource());
+        verify(keyRing, times(1)).loadSealed();
+        assertTrue(Double.isNaN(meterRegistry.get("gateway.startup.ready-time").timeGauge().value()));
+    }
+
+    @Test
+    void onlyASealedRingIsReportedStale() {
+        when(keyRing.isStale(any())).thenReturn(true);
+        doNothing().when(keyRing).refresh();
+
+        assertFalse(provisioner.isStale());
+        provisioner.start();
+        await(() -> provisioner.getSource() == KeyProvisioner.Source.DATABASE);
+
+        // A database ring that failed to refresh is shared by every node, so it is never taken out
+        assertFalse(provisioner.isStale());
+        verify(keyRing, never()).loadSealed();
+    }
+
+    @Test
+    void sealedRingIsStaleOncePeersHaveMovedOn() {
+        doThrow(new IllegalStateException("database down")).when(keyRing).refresh();
+        when(keyRing.loadSealed()).thenReturn(true);
+        when(keyRing.isStale(Duration.ofMinutes(2))).thenReturn(true);
+
+        provisioner.start();
+
+        await(() -> provisioner.getSource() == KeyProvisioner.Source.SEALED_FILE);
+        assertTrue(provisioner.isStale());
+        assertEquals(1, meterRegistry.get("gateway.keys.stale").gauge().value());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.secure_gateway.helper;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import com.secure_gateway.util.CrytoUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NonceReplayDetectorTest {
+
+    private static final Duration ROTATION = Duration.ofMinutes(1);
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(30);
+    private static final int GENERATIONS = 3;
+    // rotation-interval * (generations - 1) - clock-skew
+    private static final long MAX_AGE_MILLIS = Duration.ofSeconds(90).toMillis();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final NonceReplayDetector detector = detector(true, true);
+    private final byte[] publicKey = TweetNaclFast.randombytes(TweetNaclFast.Box.publicKeyLength);
+
+    @Test
+    void pairIsAReplayOnlyOnceMarkedSeen() {
+        byte[] nonce = nonce(System.currentTimeMillis());
+
+        assertFalse(detector.isReplay(nonce, publicKey));
+        assertTrue(detector.markSeen(nonce, publicKey));
+        assertTrue(detector.isReplay(nonce, publicKey));
+        assertFalse(detector.markSeen(nonce, publicKey));
+
+        assertFalse(detector.isReplay(nonce, TweetNaclFast.randombytes(TweetNaclFast.Box.publicKeyLength)));
+        assertFalse(detector.isReplay(nonce(System.currentTimeMillis()), publicKey));
+        assertEquals(2, meterRegistry.get("gateway.replay.rejected").counter().count());
+    }
+
+    @Test
+    void pairIsRememberedForGenerationsMinusOneRotations() {
+        byte[] nonce = nonce(System.currentTimeMillis());
+        detector.markSeen(nonce, publicKey);
+
+        for (int i = 0; i < GENERATIONS - 1; i++) {
+            detector.rotate();
+            assertTrue(detector.isReplay(nonce, publicKey), "after rotation " + (i + 1));
+        }
+        detector.rotate();
+        assertFalse(detector.isReplay(nonce, publicKey));
+    }
+
+    @Test
+    void nonceTimestampMustFallInsideTheWindow() {
+        long now = System.currentTimeMillis();
+        long skew = CLOCK_SKEW.toMillis();
+
+        assertTrue(detector.isWithinWindow(nonce(now), now));
+        assertTrue(detector.isWithinWindow(nonce(now - MAX_AGE_MILLIS), now));
+        assertTrue(detector.isWithinWindow(nonce(now + skew), now));
+        assertFalse(detector.isWithinWindow(nonce(now - MAX_AGE_MILLIS - 1), now));
+        assertFalse(detector.isWithinWindow(nonce(now + skew + 1), now));
+        assertFalse(detector.isWithinWindow(new byte[4], now));
+        assertEquals(3, meterRegistry.get("gateway.replay.expired").counter().count());
+    }
+
+    @Test
+    void generatedNoncesAreInsideTheWindow() {
+        assertTrue(detector.isWithinWindow(CrytoUtil.newNonce()));
+    }
+
+    @Test
+    void randomNoncesAreOnlyCheckedForReplayByDefault() {
+        NonceReplayDetector untimed = detector(true, false);
+        byte[] nonce = TweetNaclFast.randombytes(TweetNaclFast.Box.nonceLength);
+
+        assertTrue(untimed.isWithinWindow(nonce));
+        assertTrue(untimed.isWithinWindow(new byte[4]));
+        assertFalse(untimed.isReplay(nonce, publicKey));
+        assertTrue(untimed.markSeen(nonce, publicKey));
+        assertTrue(untimed.isReplay(nonce, publicKey));
+    }
+
+    @Test
+    void disabledDetectorAcceptsEverything() {
+        NonceReplayDetector disabled = detector(false, true);
+        byte[] nonce = nonce(0);
+
+        assertTrue(disabled.isWithinWindow(nonce));
+        assertTrue(disabled.markSeen(nonce, publicKey));
+        assertFalse(disabled.isReplay(nonce, publicKey));
+        assertTrue(disabled.markSeen(nonce, publicKey));
+    }
+
+    @Test
+    void clockSkewMustBeShorterThanTheRetention() {
+        Duration retention = ROTATION.multipliedBy(GENERATIONS - 1);
+        assertThrows(IllegalArgumentException.class, () -> new NonceReplayDetector(new SimpleMeterRegistry(), true,
+                ROTATION, GENERATIONS, 1_000, 1e-6, true, retention));
+        assertThrows(IllegalArgumentException.class, () -> new NonceReplayDetector(new SimpleMeterRegistry(), true,
+                ROTATION, 1, 1_000, 1e-6, true, CLOCK_SKEW));
+        // Clock skew is irrelevant while timestamps are not required
+        new NonceReplayDetector(new SimpleMeterRegistry(), true, ROTATION, GENERATIONS, 1_000, 1e-6, false, retention);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTargetAtTheExpectedLoad() {
+        int insertions = 60_000;
+        for (int i = 0; i < insertions; i++) {
+            detector.markSeen(nonce(i), publicKey);
+        }
+
+        int falsePositives = 0;
+        for (int i = insertions; i < insertions + 100_000; i++) {
+            if (detector.isReplay(nonce(i), publicKey)) {
+                falsePositives++;
+            }
+        }
+        // Target is 1e-6; a handful would already mean the filter is badly undersized
+        assertTrue(falsePositives <= 2, "false positives: " + falsePositives);
+        assertTrue(meterRegistry.get("gateway.replay.false-positive-rate").gauge().value() < 1e-5);
+    }
+
+    private NonceReplayDetector detector(boolean enabled, boolean requireTimestamp) {
+        // 1000 req/s over a one-minute rotation: 60k insertions per filter
+        return new NonceReplayDetector(meterRegistry, enabled, ROTATION, GENERATIONS, 1_000, 1e-6, requireTimestamp,
+                CLOCK_SKEW);
+    }
+
+    /**
+     * Nonce with the given timestamp and a random tail.
+     */
+    private static byte[] nonce(long timestampMillis) {
+        byte[] nonce = TweetNaclFast.randombytes(TweetNaclFast.Box.nonceLength);
+        ByteBuffer.wrap(nonce).putLong(timestampMillis);
+        return nonce;
+    }
+}
@@ -0,0 +1,134 @@
+package com.secure_gateway.helper;
+
+import com.iwebpp.crypto.TweetNaclFast;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SealedKeyFileTest {
+
+    @TempDir
+    Path directory;
+
+    private final String sealKey = randomKey();
+
+    @Test
+    void keysRoundTripInOrder() {
+        SealedKeyFile sealedKeyFile = new SealedKeyFile(path().toString(), sealKey);
+        List<GatewayKey> keys = List.of(key("newer", OffsetDateTime.of(2026, 10, 2, 12, 0, 0, 0, ZoneOffset.UTC)),
+                key("older", OffsetDateTime.of(2026, 10, 1, 9, 30, 0, 0, ZoneOffset.ofHours(8))));
+
+        sealedKeyFile.write(keys);
+        List<GatewayKey> read = sealedKeyFile.read();
+
+        assertEquals(keys.size(), read.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(keys.get(i).getKeyId(), read.get(i).getKeyId());
+            assertArrayEquals(keys.get(i).getPublicKey(), read.get(i).getPublicKey());
+            assertArrayEquals(keys.get(i).getSecretKey(), read.get(i).getSecretKey());
+            assertEquals(keys.get(i).getCreatedDate(), read.get(i).getCreatedDate());
+        }
+    }
+
+    @Test
+    void rewriteReplacesTheFileWithoutLeavingTempFiles() throws IOException {
+        SealedKeyFile sealedKeyFile = new SealedKeyFile(path().toString(), sealKey);
+
+        sealedKeyFile.write(List.of(key("first", OffsetDateTime.now())));
+        sealedKeyFile.write(List.of(key("second", OffsetDateTime.now())));
+
+        assertEquals("second", sealedKeyFile.read().get(0).getKeyId());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(path()), files.toList());
+        }
+    }
+
+    @Test
+    void contentsAreNotReadableWithoutTheSealKey() throws IOException {
+        GatewayKey key = key("k", OffsetDateTime.now());
+        new SealedKeyFile(path().toString(), sealKey).write(List.of(key));
+
+        byte[] file = Files.readAllBytes(path());
+        assertFalse(contains(file, key.getSecretKey()));
+        assertTrue(new SealedKeyFile(path().toString(), randomKey()).read().isEmpty());
+    }
+
+    @Test
+    void tamperedOrTruncatedFileReadsAsEmpty() throws IOException {
+        SealedKeyFile sealedKeyFile = new SealedKeyFile(path().toString(), sealKey);
+        sealedKeyFile.write(List.of(key("k", OffsetDateTime.now())));
+        byte[] file = Files.readAllBytes(path());
+
+        for (int offset : new int[]{0, TweetNaclFast.SecretBox.nonceLength, file.length - 1}) {
+            byte[] tampered = file.clone();
+            tampered[offset] ^= 1;
+            Files.write(path(), tampered);
+            assertTrue(sealedKeyFile.read().isEmpty(), "byte " + offset + " flipped");
+        }
+
+        Files.write(path(), Arrays.copyOf(file, file.length - 1));
+        assertTrue(sealedKeyFile.read().isEmpty());
+        Files.write(path(), Arrays.copyOf(file, TweetNaclFast.SecretBox.nonceLength));
+        assertTrue(sealedKeyFile.read().isEmpty());
+    }
+
+    @Test
+    void missingFileReadsAsEmpty() {
+        assertTrue(new SealedKeyFile(path().toString(), sealKey).read().isEmpty());
+    }
+
+    @Test
+    void disabledUnlessBothPathAndKeyAreSet() {
+        SealedKeyFile withoutKey = new SealedKeyFile(path().toString(), "");
+        withoutKey.write(List.of(key("k", OffsetDateTime.now())));
+
+        assertFalse(withoutKey.isEnabled());
+        assertFalse(Files.exists(path()));
+        assertTrue(withoutKey.read().isEmpty());
+        assertFalse(new SealedKeyFile("", sealKey).isEnabled());
+    }
+
+    @Test
+    void rejectsASealKeyOfTheWrongLength() {
+        String shortKey = Base64.getEncoder().encodeToString(new byte[16]);
+
+        assertThrows(IllegalArgumentException.class, () -> new SealedKeyFile(path().toString(), shortKey));
+    }
+
+    private Path path() {
+        return directory.resolve("keys.sealed");
+    }
+
+    private static GatewayKey key(String keyId, OffsetDateTime createdDate) {
+        TweetNaclFast.Box.KeyPair keyPair = TweetNaclFast.Box.keyPair();
+        return GatewayKey.of(keyId, keyPair.getPublicKey(), keyPair.getSecretKey(), createdDate);
+    }
+
+    private static String randomKey() {
+        return Base64.getEncoder().encodeToString(TweetNaclFast.randombytes(TweetNaclFast.SecretBox.keyLength));
+    }
+
+    private static boolean contains(byte[] haystack, byte[] needle) {
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            if (Arrays.equals(haystack, i, i + needle.length, needle, 0, needle.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,136 @@
+package com.secure_gateway.helper;
+
+import com.m2e.gateway.repository.CorpUserTokenRepository;
+import com.secure_gateway.repository.SessionTokenRepository;
+import com.secure_gateway.repository.SessionTokenRepository.MobileTokenIdView;
+import com.secure_gateway.repository.SessionTokenRepository.TokenIdView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionTokenBatchLoaderTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final SessionTokenRepository sessionTokenRepository = mock(SessionTokenRepository.class);
+    private final BlockingRepositoryExecutor blockingRepositoryExecutor =
+            new BlockingRepositoryExecutor(new SimpleMeterRegistry(), false, 4);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void shutdown() {
+        blockingRepositoryExecutor.destroy();
+    }
+
+    @Test
+    void lookupsInOneWindowShareOneQueryAndIdenticalTokensOneResult() {
+        when(sessionTokenRepository.findByTokenIdIn(any())).thenReturn(List.of(web("a")));
+        SessionTokenBatchLoader loader = loader(Duration.ofMillis(200), 100);
+
+        List<Boolean> results = Mono.zip(loader.exists("a", true), loader.exists("b", true), loader.exists("a", true))
+                .map(t -> List.of(t.getT1(), t.getT2(), t.getT3()))
+                .block(TIMEOUT);
+
+        assertEquals(List.of(true, false, true), results);
+        assertEquals(Set.of("a", "b"), queried(1).get(0));
+        assertEquals(1, meterRegistry.get("gateway.session.batch.deduplicated").counter().count());
+        assertEquals(2, meterRegistry.get("gateway.session.batch.size").tag("type", "web").summary().max());
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheWindow() {
+        when(sessionTokenRepository.findByTokenIdIn(any())).thenReturn(List.of(web("b")));
+        SessionTokenBatchLoader loader = loader(Duration.ofHours(1), 3);
+
+        List<Boolean> results = Mono.zip(loader.exists("a", true), loader.exists("b", true), loader.exists("c", true))
+                .map(t -> List.of(t.getT1(), t.getT2(), t.getT3()))
+                .block(TIMEOUT);
+
+        assertEquals(List.of(false, true, false), results);
+        assertEquals(Set.of("a", "b", "c"), queried(1).get(0));
+    }
+
+    @Test
+    void failedQueryFailsEveryLookupInItsBatch() {
+        IllegalStateException failure = new IllegalStateException("database down");
+        when(sessionTokenRepository.findByTokenIdIn(any())).thenThrow(failure);
+        SessionTokenBatchLoader loader = loader(Duration.ofMillis(200), 100);
+
+        Mono<Boolean> first = loader.exists("a", true).cache();
+        Mono<Boolean> second = loader.exists("b", true).cache();
+        first.subscribe(ignored -> { }, ignored -> { });
+        second.subscribe(ignored -> { }, ignored -> { });
+
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> first.block(TIMEOUT)));
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> second.block(TIMEOUT)));
+        queried(1);
+    }
+
+    @Test
+    void webAndMobileTokensAreBatchedSeparately() {
+        when(sessionTokenRepository.findByTokenIdIn(any())).thenReturn(List.of(web("a")));
+        when(sessionTokenRepository.findByMobileTokenIdIn(any())).thenReturn(List.of(mobile("m")));
+        SessionTokenBatchLoader loader = loader(Duration.ofMillis(50), 100);
+
+        assertTrue(loader.exists("a", true).block(TIMEOUT));
+        assertFalse(loader.exists("a", false).block(TIMEOUT));
+        assertTrue(loader.exists("m", false).block(TIMEOUT));
+
+        verify(sessionTokenRepository, times(1)).findByTokenIdIn(any());
+        verify(sessionTokenRepository, times(2)).findByMobileTokenIdIn(any());
+    }
+
+    @Test
+    void disabledLoaderQueriesTokenByToken() {
+        CorpUserTokenRepository corpUserTokenRepository = mock(CorpUserTokenRepository.class);
+        SessionTokenBatchLoader loader = new SessionTokenBatchLoader(corpUserTokenRepository, sessionTokenRepository,
+                blockingRepositoryExecutor, meterRegistry, false, Duration.ofMillis(50), 100);
+
+        assertFalse(loader.exists("a", true).block(TIMEOUT));
+
+        verify(corpUserTokenRepository).findByTokenId("a");
+        verify(sessionTokenRepository, never()).findByTokenIdIn(any());
+    }
+
+    private SessionTokenBatchLoader loader(Duration window, int maxSize) {
+        return new SessionTokenBatchLoader(mock(CorpUserTokenRepository.class), sessionTokenRepository,
+                blockingRepositoryExecutor, meterRegistry, true, window, maxSize);
+    }
+
+    /**
+     * The token sets of the web queries, checking that exactly {@code queries} were sent.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Set<String>> queried(int queries) {
+        ArgumentCaptor<Collection<String>> tokens = ArgumentCaptor.forClass(Collection.class);
+        verify(sessionTokenRepository, times(queries)).findByTokenIdIn(tokens.capture());
+        return tokens.getAllValues().stream().map(Set::copyOf).toList();
+    }
+
+    private static TokenIdView web(String token) {
+        return () -> token;
+    }
+
+    private static MobileTokenIdView mobile(String token) {
+        return () -> token;
+    }
+}